@@ -0,0 +1,658 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j.bench;
+
+import org.ini4j.Config;
+import org.ini4j.Ini;
+import org.ini4j.Options;
+import org.ini4j.Reg;
+import org.ini4j.Registry;
+import org.ini4j.Registry.Type;
+import org.ini4j.Wini;
+import org.ini4j.spi.BlockWriter;
+import org.ini4j.spi.IniFormatter;
+import org.ini4j.spi.IniHandler;
+import org.ini4j.spi.OptionsFormatter;
+import org.ini4j.spi.OptionsHandler;
+import org.ini4j.spi.RegEscapeTool;
+import org.ini4j.spi.TypeValuesPair;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic Ini, Wini, Options and .reg input.
+ *
+ * The output depends only on the seed and the settings: each section is
+ * generated from its own random sequence, so the same corpus comes out
+ * whether it is written to one file or spread over included ones. Options
+ * are formatted as they are generated, nothing is kept in memory, so the
+ * size of the output is not limited.
+ *
+ * Options files have no sections, their option names are prefixed with the
+ * section path instead. Include lines are only written for Ini and Wini,
+ * and are only followed when the reading configuration enables include.
+ *
+ * Usage: CorpusGenerator format file [name=value ...]
+ *
+ * where format is ini, wini, options or reg and the names are the setter
+ * names without "set", for example sections=100000 commentDensity=0.1
+ */
+public class CorpusGenerator
+{
+    public enum Format
+    {
+        INI,
+        WINI,
+        OPTIONS,
+        REG;
+    }
+
+    private static final char INCLUDE_BEGIN = '<';
+    private static final char INCLUDE_END = '>';
+    private static final char OPTIONS_SEPARATOR = '.';
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789 ";
+    private static final String ESCAPED_SPECIALS = "\\\t\n:=\"";
+    private static final String RAW_SPECIALS = "\\:=\"";
+    private static final char[][] UNICODE_RANGES = { { '\u00c0', '\u00ff' }, { '\u0391', '\u03c9' }, { '\u4e00', '\u4fff' } };
+    private static final String REG_ROOT = "HKEY_CURRENT_USER\\Software\\ini4j\\corpus";
+    private static final long SEED_MIX = 0x9e3779b97f4a7c15L;
+    private static final int MAX_MULTI_VALUES = 4;
+    private double _commentDensity;
+    private int _depth = 1;
+    private double _escapeDensity;
+    private int _includeFanOut;
+    private int _maxValueLength = 256;
+    private double _multiValueRatio;
+    private int _options = 20;
+    private double _referenceDensity;
+    private int _sections = 100;
+    private long _seed;
+    private double _unicodeDensity;
+    private int _valueLength = 16;
+
+    public static void main(String[] args) throws Exception
+    {
+        CorpusGenerator generator = new CorpusGenerator();
+
+        for (int i = 2; i < args.length; i++)
+        {
+            int idx = args[i].indexOf('=');
+
+            generator.set(args[i].substring(0, idx), args[i].substring(idx + 1));
+        }
+
+        for (File file : generator.generate(Format.valueOf(args[0].toUpperCase()), new File(args[1])))
+        {
+            System.out.println(file + " " + file.length());
+        }
+    }
+
+    public double getCommentDensity()
+    {
+        return _commentDensity;
+    }
+
+    // probability of a comment before a section or an option
+    public void setCommentDensity(double value)
+    {
+        _commentDensity = value;
+    }
+
+    public int getDepth()
+    {
+        return _depth;
+    }
+
+    // number of path components in section names
+    public void setDepth(int value)
+    {
+        _depth = value;
+    }
+
+    public double getEscapeDensity()
+    {
+        return _escapeDensity;
+    }
+
+    // probability of a character needing escape or quoting in values
+    public void setEscapeDensity(double value)
+    {
+        _escapeDensity = value;
+    }
+
+    public int getIncludeFanOut()
+    {
+        return _includeFanOut;
+    }
+
+    // number of files included by the main file, each with its share of sections
+    public void setIncludeFanOut(int value)
+    {
+        _includeFanOut = value;
+    }
+
+    public int getMaxValueLength()
+    {
+        return _maxValueLength;
+    }
+
+    public void setMaxValueLength(int value)
+    {
+        _maxValueLength = value;
+    }
+
+    public double getMultiValueRatio()
+    {
+        return _multiValueRatio;
+    }
+
+    // fraction of options with several values, REG_MULTI_SZ for .reg
+    public void setMultiValueRatio(double value)
+    {
+        _multiValueRatio = value;
+    }
+
+    public int getOptions()
+    {
+        return _options;
+    }
+
+    // options per section
+    public void setOptions(int value)
+    {
+        _options = value;
+    }
+
+    public double getReferenceDensity()
+    {
+        return _referenceDensity;
+    }
+
+    // probability of a ${} reference to an earlier option in a value
+    public void setReferenceDensity(double value)
+    {
+        _referenceDensity = value;
+    }
+
+    public int getSections()
+    {
+        return _sections;
+    }
+
+    public void setSections(int value)
+    {
+        _sections = value;
+    }
+
+    public long getSeed()
+    {
+        return _seed;
+    }
+
+    public void setSeed(long value)
+    {
+        _seed = value;
+    }
+
+    public double getUnicodeDensity()
+    {
+        return _unicodeDensity;
+    }
+
+    // probability of a non ASCII character in values
+    public void setUnicodeDensity(double value)
+    {
+        _unicodeDensity = value;
+    }
+
+    public int getValueLength()
+    {
+        return _valueLength;
+    }
+
+    // mean of the exponentially distributed value lengths
+    public void setValueLength(int value)
+    {
+        _valueLength = value;
+    }
+
+    public static Config getConfig(Format format)
+    {
+        Config ret;
+
+        switch (format)
+        {
+
+            case INI:
+                ret = new Ini().getConfig();
+                break;
+
+            case WINI:
+                ret = new Wini().getConfig();
+                break;
+
+            case OPTIONS:
+                ret = new Options().getConfig();
+                break;
+
+            default:
+                ret = new Reg().getConfig();
+                break;
+        }
+
+        return ret;
+    }
+
+    public void generate(Format format, Writer output) throws IOException
+    {
+        generate(format, output, 0, _sections, new ArrayList<String>());
+    }
+
+    // writes the main file and the included ones next to it, and returns them
+    public List<File> generate(Format format, File file) throws IOException
+    {
+        List<File> files = new ArrayList<File>();
+        int parts = ((format == Format.INI) || (format == Format.WINI)) ? (_includeFanOut + 1) : 1;
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+
+        files.add(file);
+        for (int i = 1; i < parts; i++)
+        {
+            files.add(new File(file.getParentFile(), (dot < 0) ? (name + '-' + i) : (name.substring(0, dot) + '-' + i + name.substring(dot))));
+        }
+
+        for (int i = 0; i < parts; i++)
+        {
+            List<String> includes = new ArrayList<String>();
+
+            if (i == 0)
+            {
+                for (File include : files.subList(1, parts))
+                {
+                    includes.add(include.getName());
+                }
+            }
+
+            Writer output = new BlockWriter(new FileOutputStream(files.get(i)), getConfig(format).getFileEncoding());
+
+            try
+            {
+                generate(format, output, (int) ((long) _sections * i / parts), (int) ((long) _sections * (i + 1) / parts), includes);
+            }
+            finally
+            {
+                output.close();
+            }
+        }
+
+        return files;
+    }
+
+    public void set(String name, String value)
+    {
+        if ("commentDensity".equals(name))
+        {
+            setCommentDensity(Double.parseDouble(value));
+        }
+        else if ("depth".equals(name))
+        {
+            setDepth(Integer.parseInt(value));
+        }
+        else if ("escapeDensity".equals(name))
+        {
+            setEscapeDensity(Double.parseDouble(value));
+        }
+        else if ("includeFanOut".equals(name))
+        {
+            setIncludeFanOut(Integer.parseInt(value));
+        }
+        else if ("maxValueLength".equals(name))
+        {
+            setMaxValueLength(Integer.parseInt(value));
+        }
+        else if ("multiValueRatio".equals(name))
+        {
+            setMultiValueRatio(Double.parseDouble(value));
+        }
+        else if ("options".equals(name))
+        {
+            setOptions(Integer.parseInt(value));
+        }
+        else if ("referenceDensity".equals(name))
+        {
+            setReferenceDensity(Double.parseDouble(value));
+        }
+        else if ("sections".equals(name))
+        {
+            setSections(Integer.parseInt(value));
+        }
+        else if ("seed".equals(name))
+        {
+            setSeed(Long.parseLong(value));
+        }
+        else if ("unicodeDensity".equals(name))
+        {
+            setUnicodeDensity(Double.parseDouble(value));
+        }
+        else if ("valueLength".equals(name))
+        {
+            setValueLength(Integer.parseInt(value));
+        }
+        else
+        {
+            throw new IllegalArgumentException(name);
+        }
+    }
+
+    private void generate(Format format, Writer output, int from, int to, List<String> includes) throws IOException
+    {
+        Config config = getConfig(format);
+        String separator = config.getLineSeparator();
+
+        if (format == Format.REG)
+        {
+            output.write(Registry.VERSION);
+            output.write(separator);
+            output.write(separator);
+        }
+
+        for (String include : includes)
+        {
+            output.write(INCLUDE_BEGIN + include + INCLUDE_END + separator);
+        }
+
+        if (format == Format.OPTIONS)
+        {
+            OptionsHandler handler = OptionsFormatter.newInstance(output, config);
+
+            handler.startOptions();
+            for (int i = from; i < to; i++)
+            {
+                options(handler, format, i);
+            }
+
+            handler.endOptions();
+        }
+        else
+        {
+            IniHandler handler = IniFormatter.newInstance(output, config);
+
+            handler.startIni();
+            for (int i = from; i < to; i++)
+            {
+                section(handler, format, i);
+            }
+
+            handler.endIni();
+        }
+
+        output.flush();
+    }
+
+    private String comment(Random random, int index)
+    {
+        return "generated " + index + " " + Long.toHexString(random.nextLong());
+    }
+
+    private boolean isChance(Random random, double density)
+    {
+        return (density > 0) && (random.nextDouble() < density);
+    }
+
+    private int length(Random random)
+    {
+        int len = (int) (-_valueLength * Math.log(1 - random.nextDouble()));
+
+        return Math.max(1, Math.min(_maxValueLength, len));
+    }
+
+    private String optionName(Format format, int section, int option)
+    {
+        return (format == Format.OPTIONS) ? (sectionName(format, section) + OPTIONS_SEPARATOR + "option" + option) : ("option" + option);
+    }
+
+    private void options(OptionsHandler handler, Format format, int section)
+    {
+        Random random = random(section);
+
+        for (int i = 0; i < _options; i++)
+        {
+            if (isChance(random, _commentDensity))
+            {
+                handler.handleComment(comment(random, i));
+            }
+
+            String name = optionName(format, section, i);
+            int n = isChance(random, _multiValueRatio) ? (2 + random.nextInt(MAX_MULTI_VALUES - 1)) : 1;
+
+            for (int j = 0; j < n; j++)
+            {
+                handler.handleOption(name, value(random, format, section, i));
+            }
+        }
+    }
+
+    private Random random(int section)
+    {
+        return new Random(_seed ^ ((section + 1) * SEED_MIX));
+    }
+
+    private String reference(Random random, Format format, int section, int option)
+    {
+        String ret;
+
+        if ((option > 0) && ((section == 0) || random.nextBoolean()))
+        {
+            ret = (format == Format.OPTIONS) ? optionName(format, section, random.nextInt(option)) : ("option" + random.nextInt(option));
+        }
+        else
+        {
+            int target = random.nextInt(section);
+
+            ret = (format == Format.OPTIONS) ? optionName(format, target, random.nextInt(_options))
+                                             : (sectionName(format, target) + '/' + "option" + random.nextInt(_options));
+        }
+
+        return "${" + ret + '}';
+    }
+
+    private void regValue(IniHandler handler, Random random, int option)
+    {
+        RegEscapeTool tool = RegEscapeTool.getInstance();
+        TypeValuesPair data;
+        int kind = random.nextInt(10);
+
+        if (isChance(random, _multiValueRatio))
+        {
+            String[] values = new String[2 + random.nextInt(MAX_MULTI_VALUES - 1)];
+
+            for (int i = 0; i < values.length; i++)
+            {
+                values[i] = text(random, Format.REG);
+            }
+
+            data = new TypeValuesPair(Type.REG_MULTI_SZ, values);
+        }
+        else if (kind == 0)
+        {
+            byte[] bytes = new byte[4];
+
+            random.nextBytes(bytes);
+            data = tool.decode(Type.REG_DWORD, bytes);
+        }
+        else if (kind == 1)
+        {
+            byte[] bytes = new byte[length(random)];
+
+            random.nextBytes(bytes);
+            data = tool.decode(Type.REG_BINARY, bytes);
+        }
+        else if (kind == 2)
+        {
+            data = new TypeValuesPair(Type.REG_EXPAND_SZ, new String[] { "%SystemRoot%\\" + text(random, Format.REG) });
+        }
+        else
+        {
+            data = new TypeValuesPair(Type.REG_SZ, new String[] { text(random, Format.REG) });
+        }
+
+        handler.handleOption(tool.quote("value" + option), tool.encode(data));
+    }
+
+    private void section(IniHandler handler, Format format, int section)
+    {
+        Random random = random(section);
+
+        if (isChance(random, _commentDensity))
+        {
+            handler.handleComment(comment(random, section));
+        }
+
+        String name = sectionName(format, section);
+
+        handler.startSection((format == Format.REG) ? (REG_ROOT + Registry.KEY_SEPARATOR + name) : name);
+        for (int i = 0; i < _options; i++)
+        {
+            if (isChance(random, _commentDensity))
+            {
+                handler.handleComment(comment(random, i));
+            }
+
+            if (format == Format.REG)
+            {
+                regValue(handler, random, i);
+            }
+            else
+            {
+                String option = optionName(format, section, i);
+
+                // Wini keeps a single value per option
+                int n = ((format == Format.INI) && isChance(random, _multiValueRatio)) ? (2 + random.nextInt(MAX_MULTI_VALUES - 1)) : 1;
+
+                for (int j = 0; j < n; j++)
+                {
+                    handler.handleOption(option, value(random, format, section, i));
+                }
+            }
+        }
+
+        handler.endSection();
+    }
+
+    // the path of a section spreads the sections evenly over a tree of the given depth
+    private String sectionName(Format format, int section)
+    {
+        char separator;
+
+        switch (format)
+        {
+
+            case INI:
+                separator = Config.DEFAULT_PATH_SEPARATOR;
+                break;
+
+            case WINI:
+                separator = Wini.PATH_SEPARATOR;
+                break;
+
+            case OPTIONS:
+                separator = OPTIONS_SEPARATOR;
+                break;
+
+            default:
+                separator = Registry.KEY_SEPARATOR;
+                break;
+        }
+
+        StringBuilder buff = new StringBuilder();
+        int fanOut = (int) Math.ceil(Math.pow(Math.max(_sections, 2), 1.0 / Math.max(_depth, 1)));
+        long size = 1;
+
+        for (int i = 1; i < _depth; i++)
+        {
+            size *= fanOut;
+        }
+
+        for (int i = 1; i < _depth; i++)
+        {
+            buff.append("node").append((section / size) % fanOut).append(separator);
+            size /= fanOut;
+        }
+
+        return buff.append("section").append(section).toString();
+    }
+
+    private String text(Random random, Format format)
+    {
+        int len = length(random);
+        StringBuilder buff = new StringBuilder(len);
+        String specials = ((format == Format.INI) || (format == Format.OPTIONS)) ? ESCAPED_SPECIALS : RAW_SPECIALS;
+
+        for (int i = 0; i < len; i++)
+        {
+            double chance = random.nextDouble();
+
+            if (chance < _escapeDensity)
+            {
+                buff.append(specials.charAt(random.nextInt(specials.length())));
+            }
+            else if (chance < (_escapeDensity + _unicodeDensity))
+            {
+                char[] range = UNICODE_RANGES[random.nextInt(UNICODE_RANGES.length)];
+
+                buff.append((char) (range[0] + random.nextInt(range[1] - range[0] + 1)));
+            }
+            else
+            {
+                buff.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+        }
+
+        // values are trimmed by the parsers, and a trailing backslash
+        // continues an unescaped line
+        if (Character.isWhitespace(buff.charAt(0)))
+        {
+            buff.setCharAt(0, 'x');
+        }
+
+        if (Character.isWhitespace(buff.charAt(len - 1)) || (buff.charAt(len - 1) == '\\'))
+        {
+            buff.setCharAt(len - 1, 'x');
+        }
+
+        return buff.toString();
+    }
+
+    private String value(Random random, Format format, int section, int option)
+    {
+        String ret = text(random, format);
+
+        if (((section > 0) || (option > 0)) && isChance(random, _referenceDensity))
+        {
+            ret = ret + ' ' + reference(random, format, section, option);
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal self-contained benchmark runner.
+ *
+ * Each task is called in batches sized to about a millisecond, first for
+ * a warm-up period then for the measured one, and reported as operations
+ * per second together with the bytes allocated per operation and the
+ * allocation rate of the running thread. Results are kept live through a
+ * sink so that the JIT cannot drop the work.
+ */
+public final class Harness
+{
+    private static final long BATCH_NANOS = 1000000L;
+    private static final int MAX_BATCH = 1 << 24;
+    private final Pattern _filter;
+    private final long _nanos;
+    private volatile int _sink;
+
+    public Harness(String filter, long millis)
+    {
+        _filter = Pattern.compile(filter);
+        _nanos = millis * 1000000L;
+    }
+
+    public void run(String name, Callable<?> task) throws Exception
+    {
+        if (_filter.matcher(name).find())
+        {
+            int batch = calibrate(task);
+
+            measure(task, batch, _nanos / 2);
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            long ops = measure(task, batch, _nanos);
+            long nanos = System.nanoTime() - start;
+            double bytes = (allocated < 0) ? Double.NaN : ((double) (allocatedBytes() - allocated) / ops);
+
+            System.out.println(String.format(Locale.ROOT, "%-44s %14.1f ops/s %12.1f B/op %9.1f MB/s", name, ops * 1e9 / nanos,
+                    bytes, bytes * ops * 1e3 / nanos));
+        }
+    }
+
+    private static long allocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        long ret = -1;
+
+        if ((bean instanceof com.sun.management.ThreadMXBean) && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+        {
+            ret = ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return ret;
+    }
+
+    private int calibrate(Callable<?> task) throws Exception
+    {
+        int batch = 1;
+        long nanos = 0;
+
+        while ((nanos < BATCH_NANOS) && (batch < MAX_BATCH))
+        {
+            batch *= 2;
+            long start = System.nanoTime();
+
+            call(task, batch);
+            nanos = System.nanoTime() - start;
+        }
+
+        return batch;
+    }
+
+    private void call(Callable<?> task, int count) throws Exception
+    {
+        int sink = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            sink += System.identityHashCode(task.call());
+        }
+
+        _sink += sink;
+    }
+
+    private long measure(Callable<?> task, int batch, long nanos) throws Exception
+    {
+        long end = System.nanoTime() + nanos;
+        long ops = 0;
+
+        do
+        {
+            call(task, batch);
+            ops += batch;
+        }
+        while (System.nanoTime() < end);
+
+        return ops;
+    }
+}
@@ -0,0 +1,474 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j.bench;
+
+import org.ini4j.BasicOptionMap;
+import org.ini4j.Config;
+import org.ini4j.Ini;
+import org.ini4j.Registry.Type;
+import org.ini4j.spi.EscapeTool;
+import org.ini4j.spi.IniHandler;
+import org.ini4j.spi.IniParser;
+import org.ini4j.spi.OptionsHandler;
+import org.ini4j.spi.OptionsParser;
+import org.ini4j.spi.RegEscapeTool;
+import org.ini4j.spi.TypeValuesPair;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Micro benchmarks of parsing, storing, option lookup, interpolation, bean
+ * binding and escaping, run by {@link Harness} without any dependency.
+ *
+ * Usage: MicroBenchmark [filter [millis]]
+ *
+ * The filter is a regular expression searched in the benchmark names, for
+ * example "parse|store" or "escape".
+ */
+public class MicroBenchmark
+{
+    private static final int DEFAULT_MILLIS = 2000;
+    private static final int[] LINES = { 1000, 100000 };
+    private static final int OPTIONS = 1000;
+
+    public static void main(String[] args) throws Exception
+    {
+        Harness harness = new Harness((args.length > 0) ? args[0] : "", (args.length > 1) ? Long.parseLong(args[1]) : DEFAULT_MILLIS);
+
+        parse(harness);
+        store(harness);
+        lookup(harness);
+        resolve(harness);
+        bean(harness);
+        escape(harness);
+        reg(harness);
+    }
+
+    private static void bean(Harness harness) throws Exception
+    {
+        final Ini.Section section = new Ini().add("sample");
+
+        section.put("host", "localhost");
+        section.put("port", 8080);
+        section.put("ratio", 0.75);
+        section.putAll("names", new String[] { "a", "b", "c" });
+        harness.run("bean.inject", new Callable<Object>()
+            {
+                @Override public Object call()
+                {
+                    SampleBean bean = new SampleBean();
+
+                    section.to(bean);
+
+                    return bean;
+                }
+            });
+        harness.run("bean.proxy", new Callable<Object>()
+            {
+                @Override public Object call()
+                {
+                    return section.as(Sample.class);
+                }
+            });
+        final Sample proxy = section.as(Sample.class);
+
+        harness.run("bean.proxy.get", new Callable<Object>()
+            {
+                @Override public Object call()
+                {
+                    return proxy.getPort();
+                }
+            });
+    }
+
+    private static Config config(String flags)
+    {
+        Config config = Config.getGlobal().clone();
+
+        if ("noEscape".equals(flags))
+        {
+            config.setEscape(false);
+        }
+        else if ("lowerCase".equals(flags))
+        {
+            config.setLowerCaseOption(true);
+            config.setLowerCaseSection(true);
+        }
+        else if ("emptyOption".equals(flags))
+        {
+            config.setEmptyOption(true);
+        }
+
+        return config;
+    }
+
+    private static void escape(Harness harness) throws Exception
+    {
+        final EscapeTool tool = EscapeTool.getInstance();
+        final String plain = "plain value without anything to escape";
+        final String special = "tab\there \"quoted\" and unicode \u00e9\u20ac\nnew line";
+        final String escaped = tool.escape(special);
+        final String quoted = tool.quote(special);
+
+        harness.run("escape.escape.plain", new Callable<Object>()
+            {
+                @Override public Object call()
+                {
+                    return tool.escape(plain);
+                }
+            });
+        harness.run("escape.escape.special", new Callable<Object>()
+            {
+                @Override public Object call()
+                {
+                    return tool.escape(special);
+                }
+            });
+        harness.run("escape.unescape.plain", new Callable<Object>()
+            {
+                @Override public Object call()
+                {
+                    return tool.unescape(plain);
+                }
+            });
+        harness.run("escape.unescape.special", new Callable<Object>()
+            {
+                @Override public Object call()
+                {
+                    return tool.unescape(escaped);
+                }
+            });
+        harness.run("escape.quote", new Callable<Object>()
+            {
+                @Override public Object call()
+                {
+                    return tool.quote(special);
+                }
+            });
+        harness.run("escape.unquote", new Callable<Object>()
+            {
+                @Override public Object call()
+                {
+                    return tool.unquote(quoted);
+                }
+            });
+    }
+
+    private static void lookup(Harness harness) throws Exception
+    {
+        final BasicOptionMap map = new BasicOptionMap();
+        final String[] keys = new String[OPTIONS];
+        final String[] refs = new String[OPTIONS];
+
+        for (int i = 0; i < OPTIONS; i++)
+        {
+            keys[i] = "option" + i;
+            refs[i] = "ref" + i;
+        }
+
+        for (int i = 0; i < OPTIONS; i++)
+        {
+            map.put(keys[i], "value " + i);
+            map.put(refs[i], "${" + keys[i] + "} and ${" + keys[(i + 1) % OPTIONS] + "}");
+        }
+
+        harness.run("lookup.get", new Callable<Object>()
+            {
+                private int _idx;
+
+                @Override public Object call()
+                {
+                    return map.get(keys[_idx++ % OPTIONS]);
+                }
+            });
+        harness.run("lookup.fetch.plain", new Callable<Object>()
+            {
+                private int _idx;
+
+                @Override public Object call()
+                {
+                    return map.fetch(keys[_idx++ % OPTIONS]);
+                }
+            });
+        harness.run("lookup.fetch.subst", new Callable<Object>()
+            {
+                private int _idx;
+
+                @Override public Object call()
+                {
+                    return map.fetch(refs[_idx++ % OPTIONS]);
+                }
+            });
+    }
+
+    private static void parse(Harness harness) throws Exception
+    {
+        final Sink sink = new Sink();
+
+        for (int lines : LINES)
+        {
+            final String ini = ParserBenchmark.iniText(lines, false);
+            final String options = ParserBenchmark.optionsText(lines);
+
+            for (String flags : new String[] { "default", "noEscape", "lowerCase", "emptyOption" })
+            {
+                final IniParser iniParser = IniParser.newInstance(config(flags));
+                final OptionsParser optionsParser = OptionsParser.newInstance(config(flags));
+
+                harness.run("parse.ini[lines=" + lines + "," + flags + "]", new Callable<Object>()
+                    {
+                        @Override public Object call() throws Exception
+                        {
+                            iniParser.parse(new StringReader(ini), sink);
+
+                            return sink;
+                        }
+                    });
+                harness.run("parse.options[lines=" + lines + "," + flags + "]", new Callable<Object>()
+                    {
+                        @Override public Object call() throws Exception
+                        {
+                            optionsParser.parse(new StringReader(options), sink);
+
+                            return sink;
+                        }
+                    });
+            }
+        }
+    }
+
+    private static void reg(Harness harness) throws Exception
+    {
+        final RegEscapeTool tool = RegEscapeTool.getInstance();
+        final byte[] data = new byte[256];
+
+        for (int i = 0; i < data.length; i++)
+        {
+            data[i] = (byte) i;
+        }
+
+        final String hex = tool.hexadecimal(data);
+        final String binary = Type.REG_BINARY + ":" + hex;
+        final String dword = Type.REG_DWORD + ":0001e240";
+        final TypeValuesPair multi = new TypeValuesPair(Type.REG_MULTI_SZ, new String[] { "first", "second", "third" });
+        final String encoded = tool.encode(multi);
+
+        harness.run("reg.decode.binary", new Callable<Object>()
+            {
+                @Override public Object call()
+                {
+                    return tool.decode(binary);
+                }
+            });
+        harness.run("reg.decode.dword", new Callable<Object>()
+            {
+                @Override public Object call()
+                {
+                    return tool.decode(dword);
+                }
+            });
+        harness.run("reg.decode.multi", new Callable<Object>()
+            {
+                @Override public Object call()
+                {
+                    return tool.decode(encoded);
+                }
+            });
+        harness.run("reg.encode.multi", new Callable<Object>()
+            {
+                @Override public Object call()
+                {
+                    return tool.encode(multi);
+                }
+            });
+        harness.run("reg.hexadecimal", new Callable<Object>()
+            {
+                @Override public Object call()
+                {
+                    return tool.hexadecimal(data);
+                }
+            });
+        harness.run("reg.binary", new Callable<Object>()
+            {
+                @Override public Object call()
+                {
+                    return tool.binary(hex);
+                }
+            });
+    }
+
+    private static void resolve(Harness harness) throws Exception
+    {
+        final Ini ini = new Ini();
+        final String[] names = new String[OPTIONS];
+
+        for (int i = 0; i < OPTIONS; i++)
+        {
+            names[i] = "section" + i;
+            Ini.Section section = ini.add(names[i]);
+
+            section.put("home", "/home/" + i);
+            section.put("local", "${home}/local");
+            section.put("remote", "${section" + ((i + 1) % OPTIONS) + "/home}/remote");
+        }
+
+        harness.run("resolve.section", new Callable<Object>()
+            {
+                private int _idx;
+
+                @Override public Object call()
+                {
+                    return ini.fetch(names[_idx++ % OPTIONS], "local");
+                }
+            });
+        harness.run("resolve.profile", new Callable<Object>()
+            {
+                private int _idx;
+
+                @Override public Object call()
+                {
+                    return ini.fetch(names[_idx++ % OPTIONS], "remote");
+                }
+            });
+    }
+
+    private static void store(Harness harness) throws Exception
+    {
+        for (int lines : LINES)
+        {
+            final Ini ini = new Ini(new StringReader(ParserBenchmark.iniText(lines, false)));
+
+            harness.run("store.ini[lines=" + lines + "]", new Callable<Object>()
+                {
+                    @Override public Object call() throws Exception
+                    {
+                        StringWriter output = new StringWriter();
+
+                        ini.store(output);
+
+                        return output;
+                    }
+                });
+        }
+    }
+
+    public interface Sample
+    {
+        String getHost();
+
+        String[] getNames();
+
+        int getPort();
+
+        double getRatio();
+    }
+
+    public static class SampleBean implements Sample
+    {
+        private String _host;
+        private String[] _names;
+        private int _port;
+        private double _ratio;
+
+        @Override public String getHost()
+        {
+            return _host;
+        }
+
+        public void setHost(String value)
+        {
+            _host = value;
+        }
+
+        @Override public String[] getNames()
+        {
+            return _names;
+        }
+
+        public void setNames(String[] value)
+        {
+            _names = value;
+        }
+
+        @Override public int getPort()
+        {
+            return _port;
+        }
+
+        public void setPort(int value)
+        {
+            _port = value;
+        }
+
+        @Override public double getRatio()
+        {
+            return _ratio;
+        }
+
+        public void setRatio(double value)
+        {
+            _ratio = value;
+        }
+    }
+
+    private static final class Sink implements IniHandler, OptionsHandler
+    {
+        private int _count;
+
+        @Override public void endIni()
+        {
+            _count++;
+        }
+
+        @Override public void endOptions()
+        {
+            _count++;
+        }
+
+        @Override public void endSection()
+        {
+            _count++;
+        }
+
+        @Override public void handleComment(String comment)
+        {
+            _count++;
+        }
+
+        @Override public void handleOption(String optionName, String optionValue)
+        {
+            _count++;
+        }
+
+        @Override public void startIni()
+        {
+            _count++;
+        }
+
+        @Override public void startOptions()
+        {
+            _count++;
+        }
+
+        @Override public void startSection(String sectionName)
+        {
+            _count++;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j.bench;
+
+import org.ini4j.Ini;
+import org.ini4j.Options;
+import org.ini4j.Reg;
+import org.ini4j.Wini;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import java.util.Locale;
+
+/**
+ * Parse throughput of the Ini, Wini, Reg and Options profiles on generated
+ * input, each with its own default configuration.
+ *
+ * Usage: ParserBenchmark [lines [seconds]]
+ */
+public class ParserBenchmark
+{
+    private static final int DEFAULT_LINES = 100000;
+    private static final int DEFAULT_SECONDS = 5;
+    private static final int OPTIONS_PER_SECTION = 20;
+
+    public static void main(String[] args) throws Exception
+    {
+        int lines = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_LINES;
+        int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+
+        run("Ini", iniText(lines, false), seconds);
+        run("Wini", iniText(lines, true), seconds);
+        run("Reg", regText(lines), seconds);
+        run("Options", optionsText(lines), seconds);
+    }
+
+    static String iniText(int lines, boolean windows)
+    {
+        StringBuilder buff = new StringBuilder();
+
+        buff.append("; generated\n\n");
+        for (int i = 0; i < lines; i++)
+        {
+            if ((i % OPTIONS_PER_SECTION) == 0)
+            {
+                buff.append("\n# section ").append(i).append('\n');
+                buff.append(windows ? "[root\\section" : "[root/section").append(i).append("]\n");
+            }
+            else if ((i % 7) == 0)
+            {
+                buff.append("; about option").append(i).append('\n');
+            }
+            else
+            {
+                buff.append("option").append(i).append(" = value ").append(i);
+                buff.append(windows ? " C:\\Program Files\\app" : " with \\t escape").append('\n');
+            }
+        }
+
+        return buff.toString();
+    }
+
+    static String optionsText(int lines)
+    {
+        StringBuilder buff = new StringBuilder();
+
+        for (int i = 0; i < lines; i++)
+        {
+            if ((i % 7) == 0)
+            {
+                buff.append("# about option").append(i).append('\n');
+            }
+            else
+            {
+                buff.append("option.").append(i).append(" = value ").append(i).append('\n');
+            }
+        }
+
+        return buff.toString();
+    }
+
+    static String regText(int lines)
+    {
+        StringBuilder buff = new StringBuilder();
+
+        buff.append("Windows Registry Editor Version 5.00\r\n\r\n");
+        for (int i = 0; i < lines; i++)
+        {
+            if ((i % OPTIONS_PER_SECTION) == 0)
+            {
+                buff.append("\r\n[HKEY_CURRENT_USER\\Software\\ini4j\\key").append(i).append("]\r\n");
+            }
+            else if ((i % 3) == 0)
+            {
+                buff.append("\"dword").append(i).append("\"=dword:").append(String.format("%08x", i)).append("\r\n");
+            }
+            else
+            {
+                buff.append("\"value").append(i).append("\"=\"data ").append(i).append("\"\r\n");
+            }
+        }
+
+        return buff.toString();
+    }
+
+    private static void load(String profile, String text) throws IOException
+    {
+        StringReader input = new StringReader(text);
+
+        if ("Ini".equals(profile))
+        {
+            new Ini(input);
+        }
+        else if ("Wini".equals(profile))
+        {
+            new Wini(input);
+        }
+        else if ("Reg".equals(profile))
+        {
+            new Reg(input);
+        }
+        else
+        {
+            new Options(input);
+        }
+    }
+
+    private static void run(String profile, String text, int seconds) throws IOException
+    {
+        long warmup = System.nanoTime() + (seconds * 1000000000L / 2);
+
+        while (System.nanoTime() < warmup)
+        {
+            load(profile, text);
+        }
+
+        int count = 0;
+        long start = System.nanoTime();
+        long end = start + (seconds * 1000000000L);
+        long now;
+
+        do
+        {
+            load(profile, text);
+            count++;
+            now = System.nanoTime();
+        }
+        while (now < end);
+        double millis = (now - start) / 1e6 / count;
+
+        System.out.println(String.format(Locale.ROOT, "%-8s %9.2f ms/parse %8.1f MB/s", profile, millis, text.length() / 1e3 / millis));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j.bench;
+
+import org.ini4j.Options;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Options.load against Properties.load on the same generated file, and the
+ * direct Options to Properties conversions against a store and load round
+ * trip through text.
+ *
+ * Usage: PropertiesBenchmark [lines [seconds]]
+ */
+public class PropertiesBenchmark
+{
+    private static final int DEFAULT_LINES = 100000;
+    private static final int DEFAULT_SECONDS = 5;
+
+    public static void main(String[] args) throws Exception
+    {
+        int lines = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_LINES;
+        int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+        File file = File.createTempFile("ini4j", ".properties");
+
+        try
+        {
+            write(file, lines);
+            Options options = new Options(file);
+
+            for (String task : new String[] { "Options.load", "Properties.load", "toProperties", "store+load", "from", "load+store" })
+            {
+                run(task, file, options, seconds);
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    private static void write(File file, int lines) throws IOException
+    {
+        StringBuilder buff = new StringBuilder();
+
+        for (int i = 0; i < lines; i++)
+        {
+            if ((i % 7) == 0)
+            {
+                buff.append("# about option").append(i).append('\n');
+            }
+            else
+            {
+                buff.append("option.").append(i).append(" = value ").append(i).append(" with \\t escape\n");
+            }
+        }
+
+        OutputStream output = new FileOutputStream(file);
+
+        try
+        {
+            output.write(buff.toString().getBytes("ISO-8859-1"));
+        }
+        finally
+        {
+            output.close();
+        }
+    }
+
+    private static Object execute(String task, File file, Options options) throws IOException
+    {
+        Object ret;
+
+        if ("Options.load".equals(task))
+        {
+            ret = new Options(file);
+        }
+        else if ("Properties.load".equals(task))
+        {
+            Properties props = new Properties();
+            InputStream input = new FileInputStream(file);
+
+            try
+            {
+                props.load(input);
+            }
+            finally
+            {
+                input.close();
+            }
+
+            ret = props;
+        }
+        else if ("toProperties".equals(task))
+        {
+            ret = options.toProperties();
+        }
+        else if ("store+load".equals(task))
+        {
+            StringWriter text = new StringWriter();
+            Properties props = new Properties();
+
+            options.store(text);
+            props.load(new StringReader(text.toString()));
+            ret = props;
+        }
+        else if ("from".equals(task))
+        {
+            ret = Options.from(options.toProperties());
+        }
+        else
+        {
+            StringWriter text = new StringWriter();
+
+            options.toProperties().store(text, null);
+            ret = new Options(new StringReader(text.toString()));
+        }
+
+        return ret;
+    }
+
+    private static void run(String task, File file, Options options, int seconds) throws IOException
+    {
+        long warmup = System.nanoTime() + (seconds * 1000000000L / 2);
+
+        while (System.nanoTime() < warmup)
+        {
+            execute(task, file, options);
+        }
+
+        int count = 0;
+        long start = System.nanoTime();
+        long end = start + (seconds * 1000000000L);
+        long now;
+
+        do
+        {
+            execute(task, file, options);
+            count++;
+            now = System.nanoTime();
+        }
+        while (now < end);
+        double millis = (now - start) / 1e6 / count;
+
+        System.out.println(String.format(Locale.ROOT, "%-16s %9.2f ms/op", task, millis));
+    }
+}
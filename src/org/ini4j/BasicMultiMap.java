@@ -19,18 +19,23 @@ import org.ini4j.spi.Warnings;
 
 import java.io.Serializable;
 
+import java.util.AbstractList;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
 
 public class BasicMultiMap<K, V> implements MultiMap<K, V>, Serializable
 {
     private static final long serialVersionUID = 4716749660560043989L;
     private final Map<K, List<V>> _impl;
+    private transient Set<K> _keySet;
 
     public BasicMultiMap()
     {
@@ -42,9 +47,12 @@ public class BasicMultiMap<K, V> implements MultiMap<K, V>, Serializable
         _impl = impl;
     }
 
+    // changes through the returned list are reported like the map's own
     @Override public List<V> getAll(Object key)
     {
-        return _impl.get(key);
+        List<V> values = _impl.get(key);
+
+        return (values == null) ? null : new ValueList(key, values);
     }
 
     @Override public boolean isEmpty()
@@ -55,16 +63,19 @@ public class BasicMultiMap<K, V> implements MultiMap<K, V>, Serializable
     @Override public void add(K key, V value)
     {
         getList(key, true).add(value);
+        modified(key);
     }
 
     @Override public void add(K key, V value, int index)
     {
         getList(key, true).add(index, value);
+        modified(key);
     }
 
     @Override public void clear()
     {
         _impl.clear();
+        modified(null);
     }
 
     @Override public boolean containsKey(Object key)
@@ -115,9 +126,15 @@ public class BasicMultiMap<K, V> implements MultiMap<K, V>, Serializable
         return (values == null) ? null : values.get(index);
     }
 
+    // removals through the key set go through remove, so subclasses see them
     @Override public Set<K> keySet()
     {
-        return _impl.keySet();
+        if (_keySet == null)
+        {
+            _keySet = new KeySet();
+        }
+
+        return _keySet;
     }
 
     @Override public int length(Object key)
@@ -141,12 +158,18 @@ public class BasicMultiMap<K, V> implements MultiMap<K, V>, Serializable
             ret = values.set(values.size() - 1, value);
         }
 
+        modified(key);
+
         return ret;
     }
 
     @Override public V put(K key, V value, int index)
     {
-        return getList(key, false).set(index, value);
+        V ret = getList(key, false).set(index, value);
+
+        modified(key);
+
+        return ret;
     }
 
     @SuppressWarnings(Warnings.UNCHECKED)
@@ -175,6 +198,7 @@ public class BasicMultiMap<K, V> implements MultiMap<K, V>, Serializable
         List<V> ret = _impl.get(key);
 
         _impl.put(key, new ArrayList<V>(values));
+        modified(key);
 
         return ret;
     }
@@ -183,6 +207,8 @@ public class BasicMultiMap<K, V> implements MultiMap<K, V>, Serializable
     {
         List<V> prev = _impl.remove(key);
 
+        modified(key);
+
         return (prev == null) ? null : prev.get(0);
     }
 
@@ -198,6 +224,8 @@ public class BasicMultiMap<K, V> implements MultiMap<K, V>, Serializable
             {
                 _impl.remove(key);
             }
+
+            modified(key);
         }
 
         return ret;
@@ -225,6 +253,11 @@ public class BasicMultiMap<K, V> implements MultiMap<K, V>, Serializable
         return all;
     }
 
+    void modified(Object key)
+    {
+        assert true;
+    }
+
     @SuppressWarnings(Warnings.UNCHECKED)
     private List<V> getList(Object key, boolean create)
     {
@@ -239,6 +272,111 @@ public class BasicMultiMap<K, V> implements MultiMap<K, V>, Serializable
         return values;
     }
 
+    class KeySet extends AbstractSet<K>
+    {
+        @Override public void clear()
+        {
+            BasicMultiMap.this.clear();
+        }
+
+        @Override public boolean contains(Object key)
+        {
+            return containsKey(key);
+        }
+
+        @Override public Iterator<K> iterator()
+        {
+            final Iterator<K> iterator = _impl.keySet().iterator();
+
+            return new Iterator<K>()
+            {
+                private K _last;
+
+                @Override public boolean hasNext()
+                {
+                    return iterator.hasNext();
+                }
+
+                @Override public K next()
+                {
+                    _last = iterator.next();
+
+                    return _last;
+                }
+
+                // the key is already gone, remove only reports it
+                @Override public void remove()
+                {
+                    iterator.remove();
+                    BasicMultiMap.this.remove(_last);
+                }
+            };
+        }
+
+        @Override public boolean remove(Object key)
+        {
+            boolean ret = containsKey(key);
+
+            if (ret)
+            {
+                BasicMultiMap.this.remove(key);
+            }
+
+            return ret;
+        }
+
+        @Override public int size()
+        {
+            return _impl.size();
+        }
+    }
+
+    class ValueList extends AbstractList<V> implements RandomAccess
+    {
+        private final Object _key;
+        private final List<V> _values;
+
+        ValueList(Object key, List<V> values)
+        {
+            _key = key;
+            _values = values;
+        }
+
+        @Override public void add(int index, V value)
+        {
+            _values.add(index, value);
+            modified(_key);
+        }
+
+        @Override public V get(int index)
+        {
+            return _values.get(index);
+        }
+
+        @Override public V remove(int index)
+        {
+            V ret = _values.remove(index);
+
+            modified(_key);
+
+            return ret;
+        }
+
+        @Override public V set(int index, V value)
+        {
+            V ret = _values.set(index, value);
+
+            modified(_key);
+
+            return ret;
+        }
+
+        @Override public int size()
+        {
+            return _values.size();
+        }
+    }
+
     class ShadowEntry implements Map.Entry<K, V>
     {
         private final K _key;
@@ -17,10 +17,14 @@ package org.ini4j;
 
 import org.ini4j.spi.BeanAccess;
 import org.ini4j.spi.BeanTool;
+import org.ini4j.spi.IniMetrics;
 import org.ini4j.spi.Warnings;
 
 import java.lang.reflect.Array;
 
+import java.util.List;
+import java.util.Map;
+
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -48,6 +52,12 @@ public class BasicOptionMap extends CommonMultiMap<String, String> implements Op
         _propertyFirstUpper = propertyFirstUpper;
     }
 
+    public BasicOptionMap(Map<String, List<String>> impl, boolean propertyFirstUpper)
+    {
+        super(impl);
+        _propertyFirstUpper = propertyFirstUpper;
+    }
+
     @Override
     @SuppressWarnings(Warnings.UNCHECKED)
     public <T> T getAll(Object key, Class<T> clazz)
@@ -146,6 +156,65 @@ public class BasicOptionMap extends CommonMultiMap<String, String> implements Op
         return value;
     }
 
+    @Override public boolean fetchBoolean(Object key, boolean defaultValue)
+    {
+        return parseBoolean(fetch(key), defaultValue);
+    }
+
+    @Override public double fetchDouble(Object key, double defaultValue)
+    {
+        return parseDouble(fetch(key), defaultValue);
+    }
+
+    @Override public double[] fetchDoubleArray(Object key)
+    {
+        int n = length(key);
+        double[] values = new double[n];
+
+        for (int i = 0; i < n; i++)
+        {
+            values[i] = parseDouble(fetch(key, i), 0.0);
+        }
+
+        return values;
+    }
+
+    @Override public int fetchInt(Object key, int defaultValue)
+    {
+        return parseInt(fetch(key), defaultValue);
+    }
+
+    @Override public int[] fetchIntArray(Object key)
+    {
+        int n = length(key);
+        int[] values = new int[n];
+
+        for (int i = 0; i < n; i++)
+        {
+            values[i] = parseInt(fetch(key, i), 0);
+        }
+
+        return values;
+    }
+
+    @Override public long fetchLong(Object key, long defaultValue)
+    {
+        return parseLong(fetch(key), defaultValue);
+    }
+
+    @Override public long[] fetchLongArray(Object key)
+    {
+        int n = length(key);
+        long[] values = new long[n];
+
+        for (int i = 0; i < n; i++)
+        {
+            values[i] = parseLong(fetch(key, i), 0L);
+        }
+
+        return values;
+    }
+
     @Override public void from(Object bean)
     {
         BeanTool.getInstance().inject(getDefaultBeanAccess(), bean);
@@ -180,6 +249,65 @@ public class BasicOptionMap extends CommonMultiMap<String, String> implements Op
         return BeanTool.getInstance().parse(get(key, index), clazz);
     }
 
+    @Override public boolean getBoolean(Object key, boolean defaultValue)
+    {
+        return parseBoolean(get(key), defaultValue);
+    }
+
+    @Override public double getDouble(Object key, double defaultValue)
+    {
+        return parseDouble(get(key), defaultValue);
+    }
+
+    @Override public double[] getDoubleArray(Object key)
+    {
+        int n = length(key);
+        double[] values = new double[n];
+
+        for (int i = 0; i < n; i++)
+        {
+            values[i] = parseDouble(get(key, i), 0.0);
+        }
+
+        return values;
+    }
+
+    @Override public int getInt(Object key, int defaultValue)
+    {
+        return parseInt(get(key), defaultValue);
+    }
+
+    @Override public int[] getIntArray(Object key)
+    {
+        int n = length(key);
+        int[] values = new int[n];
+
+        for (int i = 0; i < n; i++)
+        {
+            values[i] = parseInt(get(key, i), 0);
+        }
+
+        return values;
+    }
+
+    @Override public long getLong(Object key, long defaultValue)
+    {
+        return parseLong(get(key), defaultValue);
+    }
+
+    @Override public long[] getLongArray(Object key)
+    {
+        int n = length(key);
+        long[] values = new long[n];
+
+        for (int i = 0; i < n; i++)
+        {
+            values[i] = parseLong(get(key, i), 0L);
+        }
+
+        return values;
+    }
+
     @Override public String put(String key, Object value)
     {
         return super.put(key, ((value == null) || (value instanceof String)) ? (String) value : String.valueOf(value));
@@ -229,6 +357,11 @@ public class BasicOptionMap extends CommonMultiMap<String, String> implements Op
         return _defaultBeanAccess;
     }
 
+    IniMetrics getMetrics()
+    {
+        return IniMetrics.NONE;
+    }
+
     boolean isPropertyFirstUpper()
     {
         return _propertyFirstUpper;
@@ -271,10 +404,31 @@ public class BasicOptionMap extends CommonMultiMap<String, String> implements Op
             {
                 buffer.replace(m.start(), m.end(), value);
                 m.reset(buffer);
+                getMetrics().interpolationResolved();
             }
         }
     }
 
+    private static boolean parseBoolean(String value, boolean defaultValue)
+    {
+        return (value == null) ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    private static double parseDouble(String value, double defaultValue)
+    {
+        return (value == null) ? defaultValue : Double.parseDouble(value);
+    }
+
+    private static int parseInt(String value, int defaultValue)
+    {
+        return (value == null) ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static long parseLong(String value, long defaultValue)
+    {
+        return (value == null) ? defaultValue : Long.parseLong(value);
+    }
+
     private void requireArray(Class clazz)
     {
         if (!clazz.isArray())
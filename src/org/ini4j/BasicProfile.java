@@ -18,10 +18,16 @@ package org.ini4j;
 import org.ini4j.spi.AbstractBeanInvocationHandler;
 import org.ini4j.spi.BeanTool;
 import org.ini4j.spi.IniHandler;
+import org.ini4j.spi.IniMetrics;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Proxy;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -37,6 +43,8 @@ public class BasicProfile extends CommonMultiMap<String, Profile.Section> implem
     private static final int G_OPTION_IDX = 7;
     private static final long serialVersionUID = -1817521505004015256L;
     private String _comment;
+    private transient NavigableSet<String> _index;
+    private transient char _indexSeparator;
     private final boolean _propertyFirstUpper;
     private final boolean _treeMode;
 
@@ -115,6 +123,34 @@ public class BasicProfile extends CommonMultiMap<String, Profile.Section> implem
         return (sec == null) ? BeanTool.getInstance().zero(clazz) : sec.fetch(optionName, clazz);
     }
 
+    @Override public boolean fetchBoolean(Object sectionName, Object optionName, boolean defaultValue)
+    {
+        Section sec = get(sectionName);
+
+        return (sec == null) ? defaultValue : sec.fetchBoolean(optionName, defaultValue);
+    }
+
+    @Override public double fetchDouble(Object sectionName, Object optionName, double defaultValue)
+    {
+        Section sec = get(sectionName);
+
+        return (sec == null) ? defaultValue : sec.fetchDouble(optionName, defaultValue);
+    }
+
+    @Override public int fetchInt(Object sectionName, Object optionName, int defaultValue)
+    {
+        Section sec = get(sectionName);
+
+        return (sec == null) ? defaultValue : sec.fetchInt(optionName, defaultValue);
+    }
+
+    @Override public long fetchLong(Object sectionName, Object optionName, long defaultValue)
+    {
+        Section sec = get(sectionName);
+
+        return (sec == null) ? defaultValue : sec.fetchLong(optionName, defaultValue);
+    }
+
     @Override public String get(Object sectionName, Object optionName)
     {
         Section sec = get(sectionName);
@@ -129,6 +165,34 @@ public class BasicProfile extends CommonMultiMap<String, Profile.Section> implem
         return (sec == null) ? BeanTool.getInstance().zero(clazz) : sec.get(optionName, clazz);
     }
 
+    @Override public boolean getBoolean(Object sectionName, Object optionName, boolean defaultValue)
+    {
+        Section sec = get(sectionName);
+
+        return (sec == null) ? defaultValue : sec.getBoolean(optionName, defaultValue);
+    }
+
+    @Override public double getDouble(Object sectionName, Object optionName, double defaultValue)
+    {
+        Section sec = get(sectionName);
+
+        return (sec == null) ? defaultValue : sec.getDouble(optionName, defaultValue);
+    }
+
+    @Override public int getInt(Object sectionName, Object optionName, int defaultValue)
+    {
+        Section sec = get(sectionName);
+
+        return (sec == null) ? defaultValue : sec.getInt(optionName, defaultValue);
+    }
+
+    @Override public long getLong(Object sectionName, Object optionName, long defaultValue)
+    {
+        Section sec = get(sectionName);
+
+        return (sec == null) ? defaultValue : sec.getLong(optionName, defaultValue);
+    }
+
     @Override public String put(String sectionName, String optionName, Object value)
     {
         return getOrAdd(sectionName).put(optionName, value);
@@ -156,6 +220,11 @@ public class BasicProfile extends CommonMultiMap<String, Profile.Section> implem
         return PATH_SEPARATOR;
     }
 
+    IniMetrics getMetrics()
+    {
+        return IniMetrics.NONE;
+    }
+
     boolean isPropertyFirstUpper()
     {
         return _propertyFirstUpper;
@@ -195,10 +264,40 @@ public class BasicProfile extends CommonMultiMap<String, Profile.Section> implem
             {
                 buffer.replace(m.start(), m.end(), value);
                 m.reset(buffer);
+                getMetrics().interpolationResolved();
+            }
+        }
+    }
+
+    // the path index is built on the first subtree query and then kept up
+    // to date, insertion order used by store stays in the map itself
+    @Override void modified(Object key)
+    {
+        if (_index != null)
+        {
+            if (key == null)
+            {
+                _index = null;
+            }
+            else if (key instanceof String)
+            {
+                if (containsKey(key))
+                {
+                    _index.add((String) key);
+                }
+                else
+                {
+                    _index.remove(key);
+                }
             }
         }
     }
 
+    void sectionModified(Section section)
+    {
+        assert true;
+    }
+
     void store(IniHandler formatter)
     {
         formatter.startIni();
@@ -244,6 +343,45 @@ public class BasicProfile extends CommonMultiMap<String, Profile.Section> implem
         formatter.handleOption(option, section.get(option, index));
     }
 
+    // names of the section and of all sections below it in path order
+    List<String> subtreeNames(String name)
+    {
+        List<String> names = new ArrayList<String>();
+        String prefix = name + getPathSeparator();
+
+        if (containsKey(name))
+        {
+            names.add(name);
+        }
+
+        for (String key : getIndex().tailSet(prefix, true))
+        {
+            if (!key.startsWith(prefix))
+            {
+                break;
+            }
+
+            if (containsKey(key))
+            {
+                names.add(key);
+            }
+        }
+
+        return names;
+    }
+
+    private NavigableSet<String> getIndex()
+    {
+        if ((_index == null) || (_indexSeparator != getPathSeparator()))
+        {
+            _indexSeparator = getPathSeparator();
+            _index = new TreeSet<String>(new PathComparator(_indexSeparator));
+            _index.addAll(keySet());
+        }
+
+        return _index;
+    }
+
     private Section getOrAdd(String sectionName)
     {
         Section section = get(sectionName);
@@ -348,4 +486,35 @@ public class BasicProfile extends CommonMultiMap<String, Profile.Section> implem
             return ret;
         }
     }
+
+    // orders by path segments, the separator sorts before any other char so
+    // a section is directly followed by all sections below it
+    private static final class PathComparator implements Comparator<String>
+    {
+        private final char _separator;
+
+        private PathComparator(char separator)
+        {
+            _separator = separator;
+        }
+
+        @Override public int compare(String s1, String s2)
+        {
+            int len = Math.min(s1.length(), s2.length());
+            int ret = 0;
+
+            for (int i = 0; (ret == 0) && (i < len); i++)
+            {
+                char c1 = s1.charAt(i);
+                char c2 = s2.charAt(i);
+
+                if (c1 != c2)
+                {
+                    ret = (c1 == _separator) ? -1 : ((c2 == _separator) ? 1 : (c1 - c2));
+                }
+            }
+
+            return (ret == 0) ? (s1.length() - s2.length()) : ret;
+        }
+    }
 }
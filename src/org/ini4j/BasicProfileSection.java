@@ -17,14 +17,11 @@ package org.ini4j;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
 
 class BasicProfileSection extends BasicOptionMap implements Profile.Section
 {
     private static final long serialVersionUID = 985800697957194374L;
     private static final String[] EMPTY_STRING_ARRAY = {};
-    private static final char REGEXP_ESCAPE_CHAR = '\\';
-    private final Pattern _childPattern;
     private final String _name;
     private final BasicProfile _profile;
 
@@ -32,7 +29,6 @@ class BasicProfileSection extends BasicOptionMap implements Profile.Section
     {
         _profile = profile;
         _name = name;
-        _childPattern = newChildPattern(name);
     }
 
     @Override public Profile.Section getChild(String key)
@@ -77,12 +73,13 @@ class BasicProfileSection extends BasicOptionMap implements Profile.Section
     @Override public String[] childrenNames()
     {
         List<String> names = new ArrayList<String>();
+        int offset = _name.length() + 1;
 
-        for (String key : _profile.keySet())
+        for (String key : _profile.subtreeNames(_name))
         {
-            if (_childPattern.matcher(key).matches())
+            if ((key.length() > offset) && (key.indexOf(_profile.getPathSeparator(), offset) < 0))
             {
-                names.add(key.substring(_name.length() + 1));
+                names.add(key.substring(offset));
             }
         }
 
@@ -118,6 +115,16 @@ class BasicProfileSection extends BasicOptionMap implements Profile.Section
         return _profile.isPropertyFirstUpper();
     }
 
+    @Override void modified(Object key)
+    {
+        _profile.sectionModified(this);
+    }
+
+    BasicProfile getProfile()
+    {
+        return _profile;
+    }
+
     @Override void resolve(StringBuilder buffer)
     {
         _profile.resolve(buffer, this);
@@ -132,20 +139,4 @@ class BasicProfileSection extends BasicOptionMap implements Profile.Section
 
         return buff.toString();
     }
-
-    private Pattern newChildPattern(String name)
-    {
-        StringBuilder buff = new StringBuilder();
-
-        buff.append('^');
-        buff.append(Pattern.quote(name));
-        buff.append(REGEXP_ESCAPE_CHAR);
-        buff.append(_profile.getPathSeparator());
-        buff.append("[^");
-        buff.append(REGEXP_ESCAPE_CHAR);
-        buff.append(_profile.getPathSeparator());
-        buff.append("]+$");
-
-        return Pattern.compile(buff.toString());
-    }
 }
@@ -19,6 +19,9 @@ import org.ini4j.spi.IniHandler;
 import org.ini4j.spi.RegEscapeTool;
 import org.ini4j.spi.TypeValuesPair;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class BasicRegistry extends BasicProfile implements Registry
 {
     private static final long serialVersionUID = -6432826330714504802L;
@@ -39,9 +42,22 @@ public class BasicRegistry extends BasicProfile implements Registry
         _version = value;
     }
 
+    // removal entries like [-HKEY_...\key] never get parent keys
     @Override public Key add(String name)
     {
-        return (Key) super.add(name);
+        Key ret;
+
+        if ((name.length() != 0) && (name.charAt(0) == Type.REMOVE_CHAR))
+        {
+            ret = newSection(name);
+            add(name, ret);
+        }
+        else
+        {
+            ret = (Key) super.add(name);
+        }
+
+        return ret;
     }
 
     @Override public Key get(Object key)
@@ -79,6 +95,27 @@ public class BasicRegistry extends BasicProfile implements Registry
         return (Key) super.remove(key, index);
     }
 
+    // the key and all keys below it in path order
+    @Override public List<Key> subtree(String path)
+    {
+        List<Key> keys = new ArrayList<Key>();
+
+        for (String name : subtreeNames(path))
+        {
+            List<Section> sections = getAll(name);
+
+            if (sections != null)
+            {
+                for (Section section : sections)
+                {
+                    keys.add((Key) section);
+                }
+            }
+        }
+
+        return keys;
+    }
+
     @Override Key newSection(String name)
     {
         return new BasicRegistryKey(this, name);
@@ -17,29 +17,76 @@ package org.ini4j;
 
 import org.ini4j.Registry.Key;
 
+import org.ini4j.spi.RegEscapeTool;
+import org.ini4j.spi.TypeValuesPair;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 class BasicRegistryKey extends BasicProfileSection implements Registry.Key
 {
     private static final long serialVersionUID = -1390060044244350928L;
     private static final String META_TYPE = "type";
+    private TypeSlots _types;
 
     public BasicRegistryKey(BasicRegistry registry, String name)
     {
         super(registry, name);
     }
 
+    @Override public byte[] getBinary(Object key)
+    {
+        String[] values = getMultiString(key);
+
+        return (values == null) ? null : RegEscapeTool.getInstance().binary(new TypeValuesPair(getType(key, Registry.Type.REG_SZ), values));
+    }
+
+    @Override public void clear()
+    {
+        super.clear();
+        if (_types != null)
+        {
+            _types.clear();
+        }
+    }
+
     @Override public Key getChild(String key)
     {
         return (Key) super.getChild(key);
     }
 
+    @Override public int getDword(Object key)
+    {
+        return (int) getNumber(key, Integer.SIZE / Byte.SIZE);
+    }
+
+    @Override public String[] getMultiString(Object key)
+    {
+        List<String> values = getAll(key);
+
+        return (values == null) ? null : values.toArray(new String[values.size()]);
+    }
+
     @Override public Key getParent()
     {
         return (Key) super.getParent();
     }
 
+    @Override public long getQword(Object key)
+    {
+        return getNumber(key, Long.SIZE / Byte.SIZE);
+    }
+
     @Override public Registry.Type getType(Object key)
     {
-        return (Registry.Type) getMeta(META_TYPE, key);
+        return (_types == null) ? null : _types.get(key);
     }
 
     @Override public Registry.Type getType(Object key, Registry.Type defaultType)
@@ -59,13 +106,132 @@ class BasicRegistryKey extends BasicProfileSection implements Registry.Key
         return (Key) super.lookup(path);
     }
 
+    @Override public void putAll(Map<? extends String, ? extends String> map)
+    {
+        super.putAll(map);
+        if ((map instanceof BasicRegistryKey) && (((BasicRegistryKey) map)._types != null))
+        {
+            if (_types == null)
+            {
+                _types = new TypeSlots();
+            }
+
+            _types.putAll(((BasicRegistryKey) map)._types);
+        }
+    }
+
+    @Override public void putBinary(String key, Registry.Type type, byte[] value)
+    {
+        TypeValuesPair data = RegEscapeTool.getInstance().decode(type, value);
+
+        if (type == Registry.Type.REG_SZ)
+        {
+            removeType(key);
+        }
+        else
+        {
+            putType(key, type);
+        }
+
+        putAll(key, Arrays.asList(data.getValues()));
+    }
+
     @Override public Registry.Type putType(String key, Registry.Type type)
     {
-        return (Registry.Type) putMeta(META_TYPE, key, type);
+        if (_types == null)
+        {
+            _types = new TypeSlots();
+        }
+
+        Registry.Type ret = _types.put(key, type);
+
+        modified(key);
+
+        return ret;
     }
 
     @Override public Registry.Type removeType(Object key)
     {
-        return (Registry.Type) removeMeta(META_TYPE, key);
+        Registry.Type ret = null;
+
+        if (_types != null)
+        {
+            ret = _types.remove(key);
+            modified(key);
+        }
+
+        return ret;
+    }
+
+    @Override public List<Key> subtree()
+    {
+        return ((BasicRegistry) getProfile()).subtree(getName());
+    }
+
+    @Override void removeMeta(Object key)
+    {
+        super.removeMeta(key);
+        if (_types != null)
+        {
+            _types.remove(key);
+        }
+    }
+
+    // keys serialized before the type slots kept their types in the meta map
+    private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException
+    {
+        input.defaultReadObject();
+        if (_types == null)
+        {
+            for (String key : keySet())
+            {
+                Registry.Type type = (Registry.Type) takeMeta(META_TYPE, key);
+
+                if (type != null)
+                {
+                    if (_types == null)
+                    {
+                        _types = new TypeSlots();
+                    }
+
+                    _types.put(key, type);
+                }
+            }
+        }
+    }
+
+    private long getNumber(Object key, int size)
+    {
+        Registry.Type type = getType(key, Registry.Type.REG_SZ);
+        long ret = 0;
+
+        if (type == Registry.Type.REG_DWORD)
+        {
+            String value = get(key);
+
+            ret = (value == null) ? 0 : Long.parseLong(value);
+        }
+        else if ((type != Registry.Type.REG_SZ) && (type != Registry.Type.REG_EXPAND_SZ) && (type != Registry.Type.REG_MULTI_SZ))
+        {
+            byte[] data = getBinary(key);
+
+            if (data != null)
+            {
+                if (data.length < size)
+                {
+                    throw new IllegalStateException("Value too short: " + key);
+                }
+
+                ByteBuffer buff = ByteBuffer.wrap(data).order((type == Registry.Type.REG_DWORD_BIG_ENDIAN) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+
+                ret = (size == Long.SIZE / Byte.SIZE) ? buff.getLong() : buff.getInt();
+            }
+        }
+        else if (containsKey(key))
+        {
+            throw new IllegalStateException("Not a numeric value: " + key);
+        }
+
+        return ret;
     }
 }
@@ -15,6 +15,7 @@
  */
 package org.ini4j;
 
+import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -28,6 +29,15 @@ public class CommonMultiMap<K, V> extends BasicMultiMap<K, V> implements Comment
     private static final String META_COMMENT = "comment";
     private SortedMap<String, Object> _meta;
 
+    public CommonMultiMap()
+    {
+    }
+
+    public CommonMultiMap(Map<K, List<V>> impl)
+    {
+        super(impl);
+    }
+
     @Override public String getComment(Object key)
     {
         return (String) getMeta(META_COMMENT, key);
@@ -53,6 +63,7 @@ public class CommonMultiMap<K, V> extends BasicMultiMap<K, V> implements Comment
             if (meta != null)
             {
                 meta().putAll(meta);
+                modified(null);
             }
         }
     }
@@ -95,7 +106,11 @@ public class CommonMultiMap<K, V> extends BasicMultiMap<K, V> implements Comment
 
     Object putMeta(String category, K key, Object value)
     {
-        return meta().put(makeKey(category, key), value);
+        Object ret = meta().put(makeKey(category, key), value);
+
+        modified(key);
+
+        return ret;
     }
 
     void removeMeta(Object key)
@@ -107,6 +122,20 @@ public class CommonMultiMap<K, V> extends BasicMultiMap<K, V> implements Comment
     }
 
     Object removeMeta(String category, Object key)
+    {
+        Object ret = null;
+
+        if (_meta != null)
+        {
+            ret = _meta.remove(makeKey(category, key));
+            modified(key);
+        }
+
+        return ret;
+    }
+
+    // removes without reporting a modification, for use while deserializing
+    Object takeMeta(String category, Object key)
     {
         return (_meta == null) ? null : _meta.remove(makeKey(category, key));
     }
@@ -15,6 +15,8 @@
  */
 package org.ini4j;
 
+import org.ini4j.spi.IniMetrics;
+
 import java.io.Serializable;
 
 import java.nio.charset.Charset;
@@ -43,6 +45,10 @@ public class Config implements Cloneable, Serializable
     public static final String PROP_LINE_SEPARATOR = "lineSeparator";
     public static final String PROP_COMMENT = "comment";
     public static final String PROP_HEADER_COMMENT = "headerComment";
+    public static final String PROP_ATOMIC_STORE = "atomicStore";
+    public static final String PROP_FORCE_STORE = "forceStore";
+    public static final String PROP_INCREMENTAL_STORE = "incrementalStore";
+    public static final String PROP_PARALLEL_STORE = "parallelStore";
     public static final boolean DEFAULT_EMPTY_OPTION = false;
     public static final boolean DEFAULT_EMPTY_SECTION = false;
     public static final boolean DEFAULT_GLOBAL_SECTION = false;
@@ -61,36 +67,25 @@ public class Config implements Cloneable, Serializable
     public static final boolean DEFAULT_PROPERTY_FIRST_UPPER = false;
     public static final boolean DEFAULT_COMMENT = true;
     public static final boolean DEFAULT_HEADER_COMMENT = true;
+    public static final boolean DEFAULT_ATOMIC_STORE = true;
+    public static final boolean DEFAULT_FORCE_STORE = false;
+    public static final boolean DEFAULT_INCREMENTAL_STORE = false;
+    public static final boolean DEFAULT_PARALLEL_STORE = false;
     public static final char DEFAULT_PATH_SEPARATOR = '/';
     public static final String DEFAULT_LINE_SEPARATOR = getSystemProperty("line.separator", "\n");
     public static final Charset DEFAULT_FILE_ENCODING = Charset.forName("UTF-8");
     private static final Config GLOBAL = new Config();
     private static final long serialVersionUID = 2865793267410367814L;
-    private boolean _comment;
-    private boolean _emptyOption;
-    private boolean _emptySection;
-    private boolean _escape;
-    private boolean _escapeKeyOnly;
-    private boolean _escapeNewline;
-    private Charset _fileEncoding;
-    private boolean _globalSection;
-    private String _globalSectionName;
-    private boolean _headerComment;
-    private boolean _include;
-    private String _lineSeparator;
-    private boolean _lowerCaseOption;
-    private boolean _lowerCaseSection;
-    private boolean _multiOption;
-    private boolean _multiSection;
-    private char _pathSeparator;
-    private boolean _propertyFirstUpper;
-    private boolean _strictOperator;
-    private boolean _tree;
-    private boolean _unnamedSection;
+    private ConfigSnapshot _snapshot;
 
     public Config()
     {
-        reset();
+        _snapshot = ConfigSnapshot.getDefaults();
+    }
+
+    public Config(ConfigSnapshot snapshot)
+    {
+        _snapshot = snapshot;
     }
 
     public static String getEnvironment(String name)
@@ -140,214 +135,265 @@ public class Config implements Cloneable, Serializable
         return (value == null) ? defaultValue : value;
     }
 
+    public boolean isAtomicStore()
+    {
+        return _snapshot.is(ConfigSnapshot.ATOMIC_STORE);
+    }
+
+    public void setAtomicStore(boolean value)
+    {
+        set(ConfigSnapshot.ATOMIC_STORE, value);
+    }
+
     public void setComment(boolean value)
     {
-        _comment = value;
+        set(ConfigSnapshot.COMMENT, value);
     }
 
     public boolean isEscape()
     {
-        return _escape;
+        return _snapshot.is(ConfigSnapshot.ESCAPE);
     }
 
     public boolean isEscapeNewline()
     {
-        return _escapeNewline;
+        return _snapshot.is(ConfigSnapshot.ESCAPE_NEWLINE);
+    }
+
+    public boolean isIncrementalStore()
+    {
+        return _snapshot.is(ConfigSnapshot.INCREMENTAL_STORE);
+    }
+
+    public void setIncrementalStore(boolean value)
+    {
+        set(ConfigSnapshot.INCREMENTAL_STORE, value);
     }
 
     public boolean isInclude()
     {
-        return _include;
+        return _snapshot.is(ConfigSnapshot.INCLUDE);
     }
 
     public boolean isTree()
     {
-        return _tree;
+        return _snapshot.is(ConfigSnapshot.TREE);
     }
 
     public void setEmptyOption(boolean value)
     {
-        _emptyOption = value;
+        set(ConfigSnapshot.EMPTY_OPTION, value);
     }
 
     public void setEmptySection(boolean value)
     {
-        _emptySection = value;
+        set(ConfigSnapshot.EMPTY_SECTION, value);
     }
 
     public void setEscape(boolean value)
     {
-        _escape = value;
+        set(ConfigSnapshot.ESCAPE, value);
     }
 
     public void setEscapeKeyOnly(boolean value)
     {
-        _escapeKeyOnly = value;
+        set(ConfigSnapshot.ESCAPE_KEY_ONLY, value);
     }
 
     public void setEscapeNewline(boolean value)
     {
-        _escapeNewline = value;
+        set(ConfigSnapshot.ESCAPE_NEWLINE, value);
     }
 
     public Charset getFileEncoding()
     {
-        return _fileEncoding;
+        return _snapshot.getFileEncoding();
     }
 
     public void setFileEncoding(Charset value)
     {
-        _fileEncoding = value;
+        _snapshot = _snapshot.toBuilder().setFileEncoding(value).build();
+    }
+
+    public boolean isForceStore()
+    {
+        return _snapshot.is(ConfigSnapshot.FORCE_STORE);
+    }
+
+    public void setForceStore(boolean value)
+    {
+        set(ConfigSnapshot.FORCE_STORE, value);
     }
 
     public void setGlobalSection(boolean value)
     {
-        _globalSection = value;
+        set(ConfigSnapshot.GLOBAL_SECTION, value);
     }
 
     public String getGlobalSectionName()
     {
-        return _globalSectionName;
+        return _snapshot.getGlobalSectionName();
     }
 
     public void setGlobalSectionName(String value)
     {
-        _globalSectionName = value;
+        _snapshot = _snapshot.toBuilder().setGlobalSectionName(value).build();
     }
 
     public void setHeaderComment(boolean value)
     {
-        _headerComment = value;
+        set(ConfigSnapshot.HEADER_COMMENT, value);
     }
 
     public void setInclude(boolean value)
     {
-        _include = value;
+        set(ConfigSnapshot.INCLUDE, value);
     }
 
     public String getLineSeparator()
     {
-        return _lineSeparator;
+        return _snapshot.getLineSeparator();
     }
 
     public void setLineSeparator(String value)
     {
-        _lineSeparator = value;
+        _snapshot = _snapshot.toBuilder().setLineSeparator(value).build();
     }
 
     public void setLowerCaseOption(boolean value)
     {
-        _lowerCaseOption = value;
+        set(ConfigSnapshot.LOWER_CASE_OPTION, value);
     }
 
     public void setLowerCaseSection(boolean value)
     {
-        _lowerCaseSection = value;
+        set(ConfigSnapshot.LOWER_CASE_SECTION, value);
     }
 
     public void setMultiOption(boolean value)
     {
-        _multiOption = value;
+        set(ConfigSnapshot.MULTI_OPTION, value);
     }
 
     public void setMultiSection(boolean value)
     {
-        _multiSection = value;
+        set(ConfigSnapshot.MULTI_SECTION, value);
     }
 
     public boolean isEmptyOption()
     {
-        return _emptyOption;
+        return _snapshot.is(ConfigSnapshot.EMPTY_OPTION);
     }
 
     public boolean isEmptySection()
     {
-        return _emptySection;
+        return _snapshot.is(ConfigSnapshot.EMPTY_SECTION);
     }
 
     public boolean isGlobalSection()
     {
-        return _globalSection;
+        return _snapshot.is(ConfigSnapshot.GLOBAL_SECTION);
     }
 
     public boolean isLowerCaseOption()
     {
-        return _lowerCaseOption;
+        return _snapshot.is(ConfigSnapshot.LOWER_CASE_OPTION);
     }
 
     public boolean isLowerCaseSection()
     {
-        return _lowerCaseSection;
+        return _snapshot.is(ConfigSnapshot.LOWER_CASE_SECTION);
+    }
+
+    public IniMetrics getMetrics()
+    {
+        return _snapshot.getMetrics();
+    }
+
+    // null or IniMetrics.NONE disables metrics
+    public void setMetrics(IniMetrics value)
+    {
+        _snapshot = _snapshot.toBuilder().setMetrics(value).build();
     }
 
     public boolean isMultiOption()
     {
-        return _multiOption;
+        return _snapshot.is(ConfigSnapshot.MULTI_OPTION);
     }
 
     public boolean isMultiSection()
     {
-        return _multiSection;
+        return _snapshot.is(ConfigSnapshot.MULTI_SECTION);
     }
 
     public boolean isUnnamedSection()
     {
-        return _unnamedSection;
+        return _snapshot.is(ConfigSnapshot.UNNAMED_SECTION);
+    }
+
+    public boolean isParallelStore()
+    {
+        return _snapshot.is(ConfigSnapshot.PARALLEL_STORE);
+    }
+
+    public void setParallelStore(boolean value)
+    {
+        set(ConfigSnapshot.PARALLEL_STORE, value);
     }
 
     public char getPathSeparator()
     {
-        return _pathSeparator;
+        return _snapshot.getPathSeparator();
     }
 
     public void setPathSeparator(char value)
     {
-        _pathSeparator = value;
+        _snapshot = _snapshot.toBuilder().setPathSeparator(value).build();
     }
 
     public void setPropertyFirstUpper(boolean value)
     {
-        _propertyFirstUpper = value;
+        set(ConfigSnapshot.PROPERTY_FIRST_UPPER, value);
     }
 
     public boolean isPropertyFirstUpper()
     {
-        return _propertyFirstUpper;
+        return _snapshot.is(ConfigSnapshot.PROPERTY_FIRST_UPPER);
     }
 
     public boolean isStrictOperator()
     {
-        return _strictOperator;
+        return _snapshot.is(ConfigSnapshot.STRICT_OPERATOR);
     }
 
     public void setStrictOperator(boolean value)
     {
-        _strictOperator = value;
+        set(ConfigSnapshot.STRICT_OPERATOR, value);
     }
 
     public boolean isComment()
     {
-        return _comment;
+        return _snapshot.is(ConfigSnapshot.COMMENT);
     }
 
     public boolean isHeaderComment()
     {
-        return _headerComment;
+        return _snapshot.is(ConfigSnapshot.HEADER_COMMENT);
     }
 
     public void setTree(boolean value)
     {
-        _tree = value;
+        set(ConfigSnapshot.TREE, value);
     }
 
     public void setUnnamedSection(boolean value)
     {
-        _unnamedSection = value;
+        set(ConfigSnapshot.UNNAMED_SECTION, value);
     }
 
     public boolean isEscapeKeyOnly()
     {
-        return _escapeKeyOnly;
+        return _snapshot.is(ConfigSnapshot.ESCAPE_KEY_ONLY);
     }
 
     @Override public Config clone()
@@ -362,54 +408,23 @@ public class Config implements Cloneable, Serializable
         }
     }
 
-    public final void reset()
-    {
-        _emptyOption = getBoolean(PROP_EMPTY_OPTION, DEFAULT_EMPTY_OPTION);
-        _emptySection = getBoolean(PROP_EMPTY_SECTION, DEFAULT_EMPTY_SECTION);
-        _globalSection = getBoolean(PROP_GLOBAL_SECTION, DEFAULT_GLOBAL_SECTION);
-        _globalSectionName = getString(PROP_GLOBAL_SECTION_NAME, DEFAULT_GLOBAL_SECTION_NAME);
-        _include = getBoolean(PROP_INCLUDE, DEFAULT_INCLUDE);
-        _lowerCaseOption = getBoolean(PROP_LOWER_CASE_OPTION, DEFAULT_LOWER_CASE_OPTION);
-        _lowerCaseSection = getBoolean(PROP_LOWER_CASE_SECTION, DEFAULT_LOWER_CASE_SECTION);
-        _multiOption = getBoolean(PROP_MULTI_OPTION, DEFAULT_MULTI_OPTION);
-        _multiSection = getBoolean(PROP_MULTI_SECTION, DEFAULT_MULTI_SECTION);
-        _strictOperator = getBoolean(PROP_STRICT_OPERATOR, DEFAULT_STRICT_OPERATOR);
-        _unnamedSection = getBoolean(PROP_UNNAMED_SECTION, DEFAULT_UNNAMED_SECTION);
-        _escape = getBoolean(PROP_ESCAPE, DEFAULT_ESCAPE);
-        _escapeKeyOnly = getBoolean(PROP_ESCAPE_KEY_ONLY, DEFAULT_ESCAPE_KEY_ONLY);
-        _escapeNewline = getBoolean(PROP_ESCAPE_NEWLINE, DEFAULT_ESCAPE_NEWLINE);
-        _pathSeparator = getChar(PROP_PATH_SEPARATOR, DEFAULT_PATH_SEPARATOR);
-        _tree = getBoolean(PROP_TREE, DEFAULT_TREE);
-        _propertyFirstUpper = getBoolean(PROP_PROPERTY_FIRST_UPPER, DEFAULT_PROPERTY_FIRST_UPPER);
-        _lineSeparator = getString(PROP_LINE_SEPARATOR, DEFAULT_LINE_SEPARATOR);
-        _fileEncoding = getCharset(PROP_FILE_ENCODING, DEFAULT_FILE_ENCODING);
-        _comment = getBoolean(PROP_COMMENT, DEFAULT_COMMENT);
-        _headerComment = getBoolean(PROP_HEADER_COMMENT, DEFAULT_HEADER_COMMENT);
-    }
-
-    private boolean getBoolean(String name, boolean defaultValue)
+    public ConfigSnapshot getSnapshot()
     {
-        String value = getSystemProperty(KEY_PREFIX + name);
-
-        return (value == null) ? defaultValue : Boolean.parseBoolean(value);
+        return _snapshot;
     }
 
-    private char getChar(String name, char defaultValue)
+    public void setSnapshot(ConfigSnapshot value)
     {
-        String value = getSystemProperty(KEY_PREFIX + name);
-
-        return (value == null) ? defaultValue : value.charAt(0);
+        _snapshot = value;
     }
 
-    private Charset getCharset(String name, Charset defaultValue)
+    public final void reset()
     {
-        String value = getSystemProperty(KEY_PREFIX + name);
-
-        return (value == null) ? defaultValue : Charset.forName(value);
+        _snapshot = ConfigSnapshot.readDefaults();
     }
 
-    private String getString(String name, String defaultValue)
+    private void set(int feature, boolean value)
     {
-        return getSystemProperty(KEY_PREFIX + name, defaultValue);
+        _snapshot = _snapshot.toBuilder().set(feature, value).build();
     }
 }
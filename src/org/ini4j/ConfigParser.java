@@ -30,13 +30,17 @@ import java.io.Writer;
 
 import java.net.URL;
 
+import java.nio.file.Path;
+
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class ConfigParser implements Serializable
 {
@@ -165,26 +169,20 @@ public class ConfigParser implements Serializable
         return items(sectionName, raw, Collections.EMPTY_MAP);
     }
 
+    // missing references are reported here, values are resolved on first
+    // access of each entry and a reference nested too deep is then reported
+    // as IllegalStateException caused by InterpolationDepthException
     public List<Map.Entry<String, String>> items(String sectionName, boolean raw, Map<String, String> variables) throws NoSectionException,
         InterpolationMissingOptionException
     {
         Ini.Section section = requireSection(sectionName);
-        Map<String, String> ret;
 
-        if (raw)
+        if (!raw)
         {
-            ret = new HashMap<String, String>(section);
-        }
-        else
-        {
-            ret = new HashMap<String, String>();
-            for (String key : section.keySet())
-            {
-                ret.put(key, _ini.fetch(section, key, variables));
-            }
+            _ini.check(section, variables);
         }
 
-        return new ArrayList<Map.Entry<String, String>>(ret.entrySet());
+        return new Items(section, section.keySet().toArray(new String[section.size()]), raw, variables);
     }
 
     public List<String> options(String sectionName) throws NoSectionException
@@ -250,6 +248,55 @@ public class ConfigParser implements Serializable
         }
     }
 
+    // sources are File, Path, URL or file name String objects, parsed
+    // concurrently and merged in the given order; sources which cannot be
+    // opened are skipped, the ones read are returned
+    public <T> List<T> read(Collection<T> sources) throws IOException, ParsingException
+    {
+        ForkJoinPool pool = ParallelStore.getPool();
+        List<Fragment> tasks = new ArrayList<Fragment>(sources.size());
+        List<T> ret = new ArrayList<T>(sources.size());
+
+        for (T source : sources)
+        {
+            if (!((source instanceof File) || (source instanceof Path) || (source instanceof URL) || (source instanceof String)))
+            {
+                throw new IllegalArgumentException(String.valueOf(source));
+            }
+        }
+
+        try
+        {
+            for (T source : sources)
+            {
+                tasks.add(new Fragment(_ini.getDefaults(), source));
+                pool.execute(tasks.get(tasks.size() - 1));
+            }
+
+            int idx = 0;
+
+            for (T source : sources)
+            {
+                PyIni fragment = tasks.get(idx++).getResult();
+
+                if (fragment != null)
+                {
+                    _ini.merge(fragment);
+                    ret.add(source);
+                }
+            }
+        }
+        finally
+        {
+            for (Fragment task : tasks)
+            {
+                task.cancel(false);
+            }
+        }
+
+        return ret;
+    }
+
     public boolean removeOption(String sectionName, String optionName) throws NoSectionException
     {
         Ini.Section section = requireSection(sectionName);
@@ -366,6 +413,17 @@ public class ConfigParser implements Serializable
         }
     }
 
+    public static final class InterpolationDepthException extends InterpolationException
+    {
+
+        /** Use serialVersionUID for interoperability. */ private static final long serialVersionUID = -2491236361758012651L;
+
+        private InterpolationDepthException(String message)
+        {
+            super(message);
+        }
+    }
+
     public static final class InterpolationMissingOptionException extends InterpolationException
     {
 
@@ -414,8 +472,7 @@ public class ConfigParser implements Serializable
     static class PyIni extends Ini
     {
         private static final char SUBST_CHAR = '%';
-        private static final Pattern EXPRESSION = Pattern.compile("(?<!\\\\)\\%\\(([^\\)]+)\\)");
-        private static final int G_OPTION = 1;
+        private static final int MAX_INTERPOLATION_DEPTH = 10;
         protected static final String DEFAULT_SECTION_NAME = "DEFAULT";
         private static final long serialVersionUID = -7152857626328996122L;
         private final Map<String, String> _defaults;
@@ -431,6 +488,7 @@ public class ConfigParser implements Serializable
             cfg.setMultiSection(false);
             cfg.setLowerCaseOption(true);
             cfg.setLowerCaseSection(true);
+            cfg.setParallelStore(false);
             super.setConfig(cfg);
         }
 
@@ -465,7 +523,7 @@ public class ConfigParser implements Serializable
             return section;
         }
 
-        public String fetch(String sectionName, String optionName, Map<String, String> variables) throws InterpolationMissingOptionException
+        public String fetch(String sectionName, String optionName, Map<String, String> variables) throws InterpolationException
         {
             return fetch(get(sectionName), optionName, variables);
         }
@@ -475,53 +533,103 @@ public class ConfigParser implements Serializable
             return _defaultSection;
         }
 
-        protected String fetch(Ini.Section section, String optionName, Map<String, String> variables)
-            throws InterpolationMissingOptionException
+        protected String fetch(Ini.Section section, String optionName, Map<String, String> variables) throws InterpolationException
         {
             String value = section.get(optionName);
 
             if ((value != null) && (value.indexOf(SUBST_CHAR) >= 0))
             {
-                StringBuilder buffer = new StringBuilder(value);
-
-                resolve(buffer, section, variables);
-                value = buffer.toString();
+                value = resolve(template(section, optionName, value), section, variables, optionName, 1);
             }
 
             return value;
         }
 
-        protected void resolve(StringBuilder buffer, Ini.Section owner, Map<String, String> vars) throws InterpolationMissingOptionException
+        // references are looked up in the owner section, the variables, the
+        // defaults and the DEFAULT section, and expanded in the owner section
+        protected String resolve(Template template, Ini.Section owner, Map<String, String> vars, String optionName, int depth)
+            throws InterpolationException
         {
-            Matcher m = EXPRESSION.matcher(buffer);
+            if (depth > MAX_INTERPOLATION_DEPTH)
+            {
+                throw new InterpolationDepthException(optionName);
+            }
 
-            while (m.find())
+            StringBuilder buffer = new StringBuilder();
+            String[] names = template.getNames();
+            String[] texts = template.getTexts();
+
+            for (int i = 0; i < names.length; i++)
             {
-                String optionName = m.group(G_OPTION);
-                String value = owner.get(optionName);
+                String name = names[i];
+                Ini.Section section = owner;
+                String value = owner.get(name);
 
                 if (value == null)
                 {
-                    value = vars.get(optionName);
+                    section = null;
+                    value = vars.get(name);
                 }
 
                 if (value == null)
                 {
-                    value = _defaults.get(optionName);
+                    value = _defaults.get(name);
                 }
 
                 if ((value == null) && (_defaultSection != null))
                 {
-                    value = _defaultSection.get(optionName);
+                    section = _defaultSection;
+                    value = _defaultSection.get(name);
                 }
 
                 if (value == null)
                 {
-                    throw new InterpolationMissingOptionException(optionName);
+                    throw new InterpolationMissingOptionException(name);
+                }
+
+                if (value.indexOf(SUBST_CHAR) >= 0)
+                {
+                    value = resolve((section == null) ? Template.compile(value) : template(section, name, value), owner, vars, optionName, depth + 1);
                 }
 
-                buffer.replace(m.start(), m.end(), value);
-                m.reset(buffer);
+                buffer.append(texts[i]);
+                buffer.append(value);
+                getMetrics().interpolationResolved();
+            }
+
+            buffer.append(texts[names.length]);
+
+            return buffer.toString();
+        }
+
+        // finds every missing reference resolve would reach from the options of
+        // the section, without expanding them
+        void check(Ini.Section owner, Map<String, String> vars) throws InterpolationMissingOptionException
+        {
+            for (String optionName : owner.keySet())
+            {
+                String value = owner.get(optionName);
+
+                if ((value != null) && (value.indexOf(SUBST_CHAR) >= 0))
+                {
+                    check(template(owner, optionName, value), owner, vars, 1);
+                }
+            }
+        }
+
+        // options of a separately parsed file override the ones read before
+        void merge(PyIni fragment)
+        {
+            if (fragment._defaultSection != null)
+            {
+                merge(add(fragment._defaultSection.getName()), fragment._defaultSection);
+            }
+
+            for (Ini.Section from : fragment.values())
+            {
+                Ini.Section section = get(from.getName());
+
+                merge((section == null) ? add(from.getName()) : section, from);
             }
         }
 
@@ -551,5 +659,374 @@ public class ConfigParser implements Serializable
 
             formatter.endSection();
         }
+
+        @Override Section newSection(String name)
+        {
+            return new PySection(this, name);
+        }
+
+        private void merge(Ini.Section section, Ini.Section from)
+        {
+            for (String name : from.keySet())
+            {
+                section.put(name, from.get(name));
+            }
+        }
+
+        private void check(Template template, Ini.Section owner, Map<String, String> vars, int depth)
+            throws InterpolationMissingOptionException
+        {
+            for (String name : template.getNames())
+            {
+                Ini.Section section = owner;
+                String value = owner.get(name);
+
+                if (value == null)
+                {
+                    section = null;
+                    value = vars.get(name);
+                }
+
+                if (value == null)
+                {
+                    value = _defaults.get(name);
+                }
+
+                if ((value == null) && (_defaultSection != null))
+                {
+                    section = _defaultSection;
+                    value = _defaultSection.get(name);
+                }
+
+                if (value == null)
+                {
+                    throw new InterpolationMissingOptionException(name);
+                }
+
+                // deeper references are left to resolve, which rejects them
+                if ((depth < MAX_INTERPOLATION_DEPTH) && (value.indexOf(SUBST_CHAR) >= 0))
+                {
+                    check((section == null) ? Template.compile(value) : template(section, name, value), owner, vars, depth + 1);
+                }
+            }
+        }
+
+        private Template template(Ini.Section section, String optionName, String value)
+        {
+            return (section instanceof PySection) ? ((PySection) section).template(optionName, value) : Template.compile(value);
+        }
+    }
+
+    private static final class Fragment extends RecursiveTask<PyIni>
+    {
+        private static final long serialVersionUID = -3318862711254290514L;
+        private final Map<String, String> _defaults;
+        private IOException _error;
+        private final Object _source;
+
+        private Fragment(Map<String, String> defaults, Object source)
+        {
+            _defaults = defaults;
+            _source = source;
+        }
+
+        @Override protected PyIni compute()
+        {
+            PyIni ret;
+
+            try
+            {
+                ret = load();
+            }
+            catch (IOException x)
+            {
+                _error = x;
+                ret = null;
+            }
+
+            return ret;
+        }
+
+        private PyIni getResult() throws IOException
+        {
+            PyIni ret = join();
+
+            if (_error != null)
+            {
+                throw _error;
+            }
+
+            return ret;
+        }
+
+        private PyIni load() throws IOException
+        {
+            PyIni ret = new PyIni(_defaults);
+            InputStream stream = null;
+            Reader reader = null;
+            try
+            {
+                if (_source instanceof URL)
+                {
+                    stream = ((URL) _source).openStream();
+                }
+                else
+                {
+                    reader = new FileReader((_source instanceof Path) ? ((Path) _source).toFile() : ((_source instanceof File) ? (File) _source : new File((String) _source)));
+                }
+            }
+            catch (IOException x)
+            {
+                ret = null;
+            }
+
+            if (ret != null)
+            {
+                try
+                {
+                    if (stream == null)
+                    {
+                        ret.load(reader);
+                    }
+                    else
+                    {
+                        ret.load(stream);
+                    }
+                }
+                catch (InvalidFileFormatException x)
+                {
+                    throw new ParsingException(x);
+                }
+                finally
+                {
+                    if (stream == null)
+                    {
+                        reader.close();
+                    }
+                    else
+                    {
+                        stream.close();
+                    }
+                }
+            }
+
+            return ret;
+        }
+    }
+
+    // compiled templates are kept per option until the option changes; reads
+    // fill the cache, so it is concurrent to keep concurrent reads safe
+    static class PySection extends BasicProfileSection
+    {
+        private static final long serialVersionUID = 6512935724583101427L;
+        private transient volatile Map<String, Template> _templates;
+
+        PySection(PyIni ini, String name)
+        {
+            super(ini, name);
+        }
+
+        @Override void modified(Object key)
+        {
+            super.modified(key);
+            Map<String, Template> templates = _templates;
+
+            if (templates != null)
+            {
+                if (key == null)
+                {
+                    templates.clear();
+                }
+                else
+                {
+                    templates.remove(key);
+                }
+            }
+        }
+
+        Template template(String optionName, String value)
+        {
+            Map<String, Template> templates = _templates;
+
+            if (templates == null)
+            {
+                templates = new ConcurrentHashMap<String, Template>();
+                _templates = templates;
+            }
+
+            Template template = templates.get(optionName);
+
+            if (template == null)
+            {
+                template = Template.compile(value);
+                templates.put(optionName, template);
+            }
+
+            return template;
+        }
+    }
+
+    // a value split at its %(name) references: texts[i] name[i] ... texts[n]
+    static final class Template
+    {
+        private static final char ESCAPE_CHAR = '\\';
+        private static final char NAME_BEGIN = '(';
+        private static final char NAME_END = ')';
+        private final String[] _names;
+        private final String[] _texts;
+
+        private Template(String[] names, String[] texts)
+        {
+            _names = names;
+            _texts = texts;
+        }
+
+        static Template compile(String value)
+        {
+            List<String> names = new ArrayList<String>();
+            List<String> texts = new ArrayList<String>();
+            int start = 0;
+
+            for (int i = value.indexOf(PyIni.SUBST_CHAR); (i >= 0) && (i < (value.length() - 1)); i = value.indexOf(PyIni.SUBST_CHAR, i + 1))
+            {
+                if ((value.charAt(i + 1) == NAME_BEGIN) && ((i == 0) || (value.charAt(i - 1) != ESCAPE_CHAR)))
+                {
+                    int end = value.indexOf(NAME_END, i + 2);
+
+                    if (end > (i + 2))
+                    {
+                        texts.add(value.substring(start, i));
+                        names.add(value.substring(i + 2, end));
+                        start = end + 1;
+                        i = end;
+                    }
+                }
+            }
+
+            texts.add(value.substring(start));
+
+            return new Template(names.toArray(new String[names.size()]), texts.toArray(new String[texts.size()]));
+        }
+
+        String[] getNames()
+        {
+            return _names;
+        }
+
+        String[] getTexts()
+        {
+            return _texts;
+        }
+    }
+
+    private final class Item implements Map.Entry<String, String>
+    {
+        private final String _key;
+        private final Items _items;
+        private boolean _resolved;
+        private String _value;
+
+        private Item(Items items, String key)
+        {
+            _items = items;
+            _key = key;
+        }
+
+        @Override public String getKey()
+        {
+            return _key;
+        }
+
+        @Override public String getValue()
+        {
+            if (!_resolved)
+            {
+                _value = _items.resolve(_key);
+                _resolved = true;
+            }
+
+            return _value;
+        }
+
+        @Override public String setValue(String value)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public boolean equals(Object obj)
+        {
+            boolean ret = false;
+
+            if (obj instanceof Map.Entry)
+            {
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) obj;
+                String value = getValue();
+
+                ret = _key.equals(entry.getKey()) && ((value == null) ? (entry.getValue() == null) : value.equals(entry.getValue()));
+            }
+
+            return ret;
+        }
+
+        @Override public int hashCode()
+        {
+            String value = getValue();
+
+            return _key.hashCode() ^ ((value == null) ? 0 : value.hashCode());
+        }
+
+        @Override public String toString()
+        {
+            return _key + "=" + getValue();
+        }
+    }
+
+    private final class Items extends AbstractList<Map.Entry<String, String>>
+    {
+        private final Item[] _entries;
+        private final String[] _keys;
+        private final boolean _raw;
+        private final Ini.Section _section;
+        private final Map<String, String> _variables;
+
+        private Items(Ini.Section section, String[] keys, boolean raw, Map<String, String> variables)
+        {
+            _section = section;
+            _keys = keys;
+            _raw = raw;
+            _variables = variables;
+            _entries = new Item[keys.length];
+        }
+
+        @Override public Map.Entry<String, String> get(int index)
+        {
+            if (_entries[index] == null)
+            {
+                _entries[index] = new Item(this, _keys[index]);
+            }
+
+            return _entries[index];
+        }
+
+        @Override public int size()
+        {
+            return _keys.length;
+        }
+
+        private String resolve(String key)
+        {
+            String value;
+
+            try
+            {
+                value = _raw ? _section.get(key) : _ini.fetch(_section, key, _variables);
+            }
+            catch (InterpolationException x)
+            {
+                throw new IllegalStateException(x);
+            }
+
+            return value;
+        }
     }
 }
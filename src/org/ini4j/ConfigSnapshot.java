@@ -0,0 +1,295 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j;
+
+import org.ini4j.spi.IniMetrics;
+
+import java.io.Serializable;
+
+import java.nio.charset.Charset;
+
+/**
+ * Immutable set of configuration values, the flags packed into one int.
+ *
+ * Parsers and formatters take a snapshot of their Config once per parse or
+ * store. The default snapshot is read from the org.ini4j.config system
+ * properties on first use and again on each Config.reset().
+ */
+public final class ConfigSnapshot implements Serializable
+{
+    public static final int EMPTY_OPTION = 1;
+    public static final int EMPTY_SECTION = 1 << 1;
+    public static final int GLOBAL_SECTION = 1 << 2;
+    public static final int INCLUDE = 1 << 3;
+    public static final int LOWER_CASE_OPTION = 1 << 4;
+    public static final int LOWER_CASE_SECTION = 1 << 5;
+    public static final int MULTI_OPTION = 1 << 6;
+    public static final int MULTI_SECTION = 1 << 7;
+    public static final int STRICT_OPERATOR = 1 << 8;
+    public static final int UNNAMED_SECTION = 1 << 9;
+    public static final int ESCAPE = 1 << 10;
+    public static final int ESCAPE_NEWLINE = 1 << 11;
+    public static final int ESCAPE_KEY_ONLY = 1 << 12;
+    public static final int TREE = 1 << 13;
+    public static final int PROPERTY_FIRST_UPPER = 1 << 14;
+    public static final int COMMENT = 1 << 15;
+    public static final int HEADER_COMMENT = 1 << 16;
+    public static final int ATOMIC_STORE = 1 << 17;
+    public static final int FORCE_STORE = 1 << 18;
+    public static final int INCREMENTAL_STORE = 1 << 19;
+    public static final int PARALLEL_STORE = 1 << 20;
+    private static final long serialVersionUID = -3911618206471593155L;
+    private static volatile ConfigSnapshot _defaults;
+    private final String _fileEncoding;
+    private final transient Charset _charset;
+    private final int _features;
+    private final String _globalSectionName;
+    private final String _lineSeparator;
+    private final transient IniMetrics _metrics;
+    private final char _pathSeparator;
+
+    private ConfigSnapshot(Builder builder)
+    {
+        _features = builder._features;
+        _charset = builder._fileEncoding;
+        _fileEncoding = _charset.name();
+        _globalSectionName = builder._globalSectionName;
+        _lineSeparator = builder._lineSeparator;
+        _metrics = builder._metrics;
+        _pathSeparator = builder._pathSeparator;
+    }
+
+    public static Builder builder()
+    {
+        return getDefaults().toBuilder();
+    }
+
+    public static ConfigSnapshot getDefaults()
+    {
+        ConfigSnapshot ret = _defaults;
+
+        if (ret == null)
+        {
+            ret = readDefaults();
+        }
+
+        return ret;
+    }
+
+    static ConfigSnapshot readDefaults()
+    {
+        Builder builder = new Builder();
+
+        builder.set(EMPTY_OPTION, getBoolean(Config.PROP_EMPTY_OPTION, Config.DEFAULT_EMPTY_OPTION));
+        builder.set(EMPTY_SECTION, getBoolean(Config.PROP_EMPTY_SECTION, Config.DEFAULT_EMPTY_SECTION));
+        builder.set(GLOBAL_SECTION, getBoolean(Config.PROP_GLOBAL_SECTION, Config.DEFAULT_GLOBAL_SECTION));
+        builder.set(INCLUDE, getBoolean(Config.PROP_INCLUDE, Config.DEFAULT_INCLUDE));
+        builder.set(LOWER_CASE_OPTION, getBoolean(Config.PROP_LOWER_CASE_OPTION, Config.DEFAULT_LOWER_CASE_OPTION));
+        builder.set(LOWER_CASE_SECTION, getBoolean(Config.PROP_LOWER_CASE_SECTION, Config.DEFAULT_LOWER_CASE_SECTION));
+        builder.set(MULTI_OPTION, getBoolean(Config.PROP_MULTI_OPTION, Config.DEFAULT_MULTI_OPTION));
+        builder.set(MULTI_SECTION, getBoolean(Config.PROP_MULTI_SECTION, Config.DEFAULT_MULTI_SECTION));
+        builder.set(STRICT_OPERATOR, getBoolean(Config.PROP_STRICT_OPERATOR, Config.DEFAULT_STRICT_OPERATOR));
+        builder.set(UNNAMED_SECTION, getBoolean(Config.PROP_UNNAMED_SECTION, Config.DEFAULT_UNNAMED_SECTION));
+        builder.set(ESCAPE, getBoolean(Config.PROP_ESCAPE, Config.DEFAULT_ESCAPE));
+        builder.set(ESCAPE_KEY_ONLY, getBoolean(Config.PROP_ESCAPE_KEY_ONLY, Config.DEFAULT_ESCAPE_KEY_ONLY));
+        builder.set(ESCAPE_NEWLINE, getBoolean(Config.PROP_ESCAPE_NEWLINE, Config.DEFAULT_ESCAPE_NEWLINE));
+        builder.set(TREE, getBoolean(Config.PROP_TREE, Config.DEFAULT_TREE));
+        builder.set(PROPERTY_FIRST_UPPER, getBoolean(Config.PROP_PROPERTY_FIRST_UPPER, Config.DEFAULT_PROPERTY_FIRST_UPPER));
+        builder.set(COMMENT, getBoolean(Config.PROP_COMMENT, Config.DEFAULT_COMMENT));
+        builder.set(HEADER_COMMENT, getBoolean(Config.PROP_HEADER_COMMENT, Config.DEFAULT_HEADER_COMMENT));
+        builder.set(ATOMIC_STORE, getBoolean(Config.PROP_ATOMIC_STORE, Config.DEFAULT_ATOMIC_STORE));
+        builder.set(FORCE_STORE, getBoolean(Config.PROP_FORCE_STORE, Config.DEFAULT_FORCE_STORE));
+        builder.set(INCREMENTAL_STORE, getBoolean(Config.PROP_INCREMENTAL_STORE, Config.DEFAULT_INCREMENTAL_STORE));
+        builder.set(PARALLEL_STORE, getBoolean(Config.PROP_PARALLEL_STORE, Config.DEFAULT_PARALLEL_STORE));
+        builder.setGlobalSectionName(getString(Config.PROP_GLOBAL_SECTION_NAME, Config.DEFAULT_GLOBAL_SECTION_NAME));
+        builder.setPathSeparator(getChar(Config.PROP_PATH_SEPARATOR, Config.DEFAULT_PATH_SEPARATOR));
+        builder.setLineSeparator(getString(Config.PROP_LINE_SEPARATOR, Config.DEFAULT_LINE_SEPARATOR));
+        builder.setFileEncoding(getCharset(Config.PROP_FILE_ENCODING, Config.DEFAULT_FILE_ENCODING));
+        ConfigSnapshot ret = builder.build();
+
+        _defaults = ret;
+
+        return ret;
+    }
+
+    public int getFeatures()
+    {
+        return _features;
+    }
+
+    public Charset getFileEncoding()
+    {
+        return _charset;
+    }
+
+    public String getGlobalSectionName()
+    {
+        return _globalSectionName;
+    }
+
+    public String getLineSeparator()
+    {
+        return _lineSeparator;
+    }
+
+    public IniMetrics getMetrics()
+    {
+        return _metrics;
+    }
+
+    public char getPathSeparator()
+    {
+        return _pathSeparator;
+    }
+
+    public boolean is(int feature)
+    {
+        return (_features & feature) == feature;
+    }
+
+    public Builder toBuilder()
+    {
+        Builder ret = new Builder();
+
+        ret._features = _features;
+        ret._fileEncoding = _charset;
+        ret._globalSectionName = _globalSectionName;
+        ret._lineSeparator = _lineSeparator;
+        ret._metrics = _metrics;
+        ret._pathSeparator = _pathSeparator;
+
+        return ret;
+    }
+
+    @Override public boolean equals(Object obj)
+    {
+        boolean ret = obj == this;
+
+        if (!ret && (obj instanceof ConfigSnapshot))
+        {
+            ConfigSnapshot other = (ConfigSnapshot) obj;
+
+            ret = (_features == other._features) && (_pathSeparator == other._pathSeparator) && _fileEncoding.equals(other._fileEncoding)
+              && _globalSectionName.equals(other._globalSectionName) && _lineSeparator.equals(other._lineSeparator) && (_metrics == other._metrics);
+        }
+
+        return ret;
+    }
+
+    @Override public int hashCode()
+    {
+        return (_features * 31) + _pathSeparator;
+    }
+
+    private static boolean getBoolean(String name, boolean defaultValue)
+    {
+        String value = Config.getSystemProperty(Config.KEY_PREFIX + name);
+
+        return (value == null) ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    private static char getChar(String name, char defaultValue)
+    {
+        String value = Config.getSystemProperty(Config.KEY_PREFIX + name);
+
+        return (value == null) ? defaultValue : value.charAt(0);
+    }
+
+    private static Charset getCharset(String name, Charset defaultValue)
+    {
+        String value = Config.getSystemProperty(Config.KEY_PREFIX + name);
+
+        return (value == null) ? defaultValue : Charset.forName(value);
+    }
+
+    private static String getString(String name, String defaultValue)
+    {
+        return Config.getSystemProperty(Config.KEY_PREFIX + name, defaultValue);
+    }
+
+    private Object readResolve()
+    {
+        // metrics listeners are not serialized
+        return toBuilder().setFileEncoding(Charset.forName(_fileEncoding)).setMetrics(IniMetrics.NONE).build();
+    }
+
+    public static final class Builder
+    {
+        private int _features;
+        private Charset _fileEncoding;
+        private String _globalSectionName;
+        private String _lineSeparator;
+        private IniMetrics _metrics = IniMetrics.NONE;
+        private char _pathSeparator;
+
+        private Builder()
+        {
+            assert true;
+        }
+
+        public Builder setFileEncoding(Charset value)
+        {
+            _fileEncoding = value;
+
+            return this;
+        }
+
+        public Builder setGlobalSectionName(String value)
+        {
+            _globalSectionName = value;
+
+            return this;
+        }
+
+        public Builder setLineSeparator(String value)
+        {
+            _lineSeparator = value;
+
+            return this;
+        }
+
+        public Builder setMetrics(IniMetrics value)
+        {
+            _metrics = (value == null) ? IniMetrics.NONE : value;
+
+            return this;
+        }
+
+        public Builder setPathSeparator(char value)
+        {
+            _pathSeparator = value;
+
+            return this;
+        }
+
+        public ConfigSnapshot build()
+        {
+            if ((_fileEncoding == null) || (_globalSectionName == null) || (_lineSeparator == null))
+            {
+                throw new IllegalStateException("Incomplete configuration");
+            }
+
+            return new ConfigSnapshot(this);
+        }
+
+        public Builder set(int feature, boolean value)
+        {
+            _features = value ? (_features | feature) : (_features & ~feature);
+
+            return this;
+        }
+    }
+}
@@ -15,19 +15,19 @@
  */
 package org.ini4j;
 
+import org.ini4j.spi.AtomicFileOutputStream;
 import org.ini4j.spi.IniBuilder;
 import org.ini4j.spi.IniFormatter;
 import org.ini4j.spi.IniHandler;
+import org.ini4j.spi.IniMetrics;
 import org.ini4j.spi.IniParser;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 
@@ -38,6 +38,7 @@ public class Ini extends BasicProfile implements Persistable, Configurable
     private static final long serialVersionUID = -6029486578113700585L;
     private Config _config;
     private File _file;
+    private transient SectionTracker _tracker;
 
     public Ini()
     {
@@ -84,6 +85,15 @@ public class Ini extends BasicProfile implements Persistable, Configurable
         return _file;
     }
 
+    @Override public void setComment(String value)
+    {
+        super.setComment(value);
+        if (_tracker != null)
+        {
+            _tracker.markHeaderDirty();
+        }
+    }
+
     @Override public void setFile(File value)
     {
         _file = value;
@@ -106,16 +116,26 @@ public class Ini extends BasicProfile implements Persistable, Configurable
 
     @Override public void load(Reader input) throws IOException, InvalidFileFormatException
     {
+        _tracker = null;
         IniParser.newInstance(getConfig()).parse(input, newBuilder());
     }
 
     @Override public void load(File input) throws IOException, InvalidFileFormatException
     {
-        load(input.toURI().toURL());
+        boolean track = getConfig().isIncrementalStore() && isEmpty() && (getComment() == null);
+        IniHandler builder = newBuilder();
+
+        _tracker = null;
+        IniParser.newInstance(getConfig()).parse(input.toURI().toURL(), builder);
+        if (track && (builder instanceof IniBuilder))
+        {
+            _tracker = SectionTracker.newInstance(input, ((IniBuilder) builder).getSpans());
+        }
     }
 
     @Override public void load(URL input) throws IOException, InvalidFileFormatException
     {
+        _tracker = null;
         IniParser.newInstance(getConfig()).parse(input, newBuilder());
     }
 
@@ -131,20 +151,41 @@ public class Ini extends BasicProfile implements Persistable, Configurable
 
     @Override public void store(OutputStream output) throws IOException
     {
-        store(new OutputStreamWriter(output, getConfig().getFileEncoding()));
+        if (getConfig().isParallelStore() && ParallelStore.isSupported(this))
+        {
+            ParallelStore.store(this, output);
+        }
+        else
+        {
+            store(IniFormatter.newInstance(output, getConfig()));
+        }
     }
 
     @Override public void store(Writer output) throws IOException
     {
-        store(IniFormatter.newInstance(output, getConfig()));
+        if (getConfig().isParallelStore() && ParallelStore.isSupported(this))
+        {
+            ParallelStore.store(this, output);
+        }
+        else
+        {
+            store(IniFormatter.newInstance(output, getConfig()));
+        }
     }
 
     @Override public void store(File output) throws IOException
     {
-        OutputStream stream = new FileOutputStream(output);
+        if (getConfig().isIncrementalStore())
+        {
+            SectionTracker tracker = _tracker;
 
-        store(stream);
-        stream.close();
+            _tracker = null;
+            _tracker = ((tracker != null) && tracker.isCurrent(output)) ? tracker.store(this) : SectionTracker.store(this, output);
+        }
+        else
+        {
+            AtomicFileOutputStream.store(this, output, getConfig());
+        }
     }
 
     protected IniHandler newBuilder()
@@ -168,6 +209,33 @@ public class Ini extends BasicProfile implements Persistable, Configurable
         }
     }
 
+    @Override void modified(Object key)
+    {
+        super.modified(key);
+        if (_tracker != null)
+        {
+            if (key == null)
+            {
+                _tracker = null;
+            }
+            else if (containsKey(key))
+            {
+                for (Profile.Section section : getAll(key))
+                {
+                    _tracker.markDirty(section);
+                }
+            }
+        }
+    }
+
+    @Override void sectionModified(Profile.Section section)
+    {
+        if (_tracker != null)
+        {
+            _tracker.markDirty(section);
+        }
+    }
+
     @Override boolean isTreeMode()
     {
         return getConfig().isTree();
@@ -178,6 +246,11 @@ public class Ini extends BasicProfile implements Persistable, Configurable
         return getConfig().getPathSeparator();
     }
 
+    @Override IniMetrics getMetrics()
+    {
+        return getConfig().getMetrics();
+    }
+
     @Override boolean isPropertyFirstUpper()
     {
         return getConfig().isPropertyFirstUpper();
@@ -15,8 +15,14 @@
  */
 package org.ini4j;
 
+import static org.ini4j.IniPreferencesFactory.KEY_JOURNAL_LIMIT;
+import static org.ini4j.IniPreferencesFactory.KEY_MAX_LATENCY;
+import static org.ini4j.IniPreferencesFactory.KEY_MAX_PENDING;
+import static org.ini4j.IniPreferencesFactory.KEY_SHARED;
 import static org.ini4j.IniPreferencesFactory.KEY_SYSTEM;
 import static org.ini4j.IniPreferencesFactory.KEY_USER;
+import static org.ini4j.IniPreferencesFactory.KEY_WATCH_INTERVAL;
+import static org.ini4j.IniPreferencesFactory.KEY_WRITE_DELAY;
 import static org.ini4j.IniPreferencesFactory.PROPERTIES;
 
 import java.io.File;
@@ -24,17 +30,35 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.net.URI;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.prefs.AbstractPreferences;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
+import org.ini4j.spi.IniFormatter;
+
 public class IniPreferences extends AbstractPreferences {
 	protected class SectionPreferences extends AbstractPreferences {
 		/** underlaying <code>Section</code> implementation */
@@ -65,20 +89,68 @@ public class IniPreferences extends AbstractPreferences {
 		@Override
 		protected SectionPreferences childSpi(String name)
 				throws UnsupportedOperationException {
-			Ini.Section child = _section.getChild(name);
-			boolean isNew = child == null;
+			Ini.Section child;
+			boolean isNew;
 
-			if (isNew) {
-				child = _section.addChild(name);
-				if (!ignoreChange) {
-					change = true;
-					store();
+			synchronized (_ini) {
+				child = _section.getChild(name);
+				isNew = child == null;
+				if (isNew) {
+					child = _section.addChild(name);
+					if (!ignoreChange) {
+						changed(PreferencesJournal.ADD_NODE, child.getName(),
+								null, null);
+					}
 				}
 			}
 
 			return new SectionPreferences(this, child, isNew);
 		}
 
+		/**
+		 * Implements the <CODE>exportNode</CODE> method as per the
+		 * specification in
+		 * {@link java.util.prefs.Preferences#exportNode(OutputStream)}.
+		 * <p>
+		 * This implementation streams the XML document directly from the
+		 * underlaying <code>Ini</code>.
+		 *
+		 * @param os
+		 *            the output stream on which to emit the XML document.
+		 * @throws IOException
+		 *             if writing to the specified output stream results in an
+		 *             <tt>IOException</tt>.
+		 * @throws BackingStoreException
+		 *             if preference data cannot be read from backing store.
+		 */
+		@Override
+		public void exportNode(OutputStream os)
+				throws IOException, BackingStoreException {
+			export(_section, os, false);
+		}
+
+		/**
+		 * Implements the <CODE>exportSubtree</CODE> method as per the
+		 * specification in
+		 * {@link java.util.prefs.Preferences#exportSubtree(OutputStream)}.
+		 * <p>
+		 * This implementation streams the XML document directly from the
+		 * underlaying <code>Ini</code>.
+		 *
+		 * @param os
+		 *            the output stream on which to emit the XML document.
+		 * @throws IOException
+		 *             if writing to the specified output stream results in an
+		 *             <tt>IOException</tt>.
+		 * @throws BackingStoreException
+		 *             if preference data cannot be read from backing store.
+		 */
+		@Override
+		public void exportSubtree(OutputStream os)
+				throws IOException, BackingStoreException {
+			export(_section, os, true);
+		}
+
 		/**
 		 * Implements the <CODE>flush</CODE> method as per the specification in
 		 * {@link java.util.prefs.Preferences#flush()}.
@@ -158,17 +230,16 @@ public class IniPreferences extends AbstractPreferences {
 		 */
 		@Override
 		protected void putSpi(String key, String value) {
-			String old = _section.get(key);
-			if (old == value) {
-				return;
-			}
-			if (old != null && old.equals(value)) {
-				return;
-			}
-			_section.put(key, value);
-			if (!ignoreChange) {
-				change = true;
-				store();
+			synchronized (_ini) {
+				String old = _section.get(key);
+				if (old == value) {
+					return;
+				}
+				if (old != null && old.equals(value)) {
+					return;
+				}
+				_section.put(key, value);
+				changed(PreferencesJournal.PUT, _section.getName(), key, value);
 			}
 		}
 
@@ -183,10 +254,10 @@ public class IniPreferences extends AbstractPreferences {
 		 */
 		@Override
 		protected void removeNodeSpi() throws BackingStoreException {
-			_ini.remove(_section);
-			if (!ignoreChange) {
-				change = true;
-				store();
+			synchronized (_ini) {
+				_ini.remove(_section);
+				changed(PreferencesJournal.REMOVE_NODE, _section.getName(),
+						null, null);
 			}
 		}
 
@@ -199,10 +270,10 @@ public class IniPreferences extends AbstractPreferences {
 		 */
 		@Override
 		protected void removeSpi(String key) {
-			if (_section.remove(key) != null) {
-				if (!ignoreChange) {
-					change = true;
-					store();
+			synchronized (_ini) {
+				if (_section.remove(key) != null) {
+					changed(PreferencesJournal.REMOVE, _section.getName(), key,
+							null);
 				}
 			}
 		}
@@ -238,10 +309,82 @@ public class IniPreferences extends AbstractPreferences {
 		}
 	}
 
+	/** a change of a node or a key, in terms of journal operations */
+	private static final class Change {
+		final byte op;
+		final String section;
+		final String key;
+		final String value;
+
+		Change(byte op, String section, String key, String value) {
+			this.op = op;
+			this.section = section;
+			this.key = key;
+			this.value = value;
+		}
+	}
+
 	private static volatile Preferences _system;
 	private static volatile Preferences _user;
 	/** frequently used empty String array */
 	private static final String[] EMPTY = {};
+	/** default number of pending changes forcing a write-behind store */
+	private static final int DEFAULT_MAX_PENDING = 1000;
+	/** default longest time a change may stay pending, in milliseconds */
+	private static final long DEFAULT_MAX_LATENCY = 5000;
+	/** suffix of the file locked by writers in shared mode */
+	private static final String LOCK_SUFFIX = ".lock";
+	/** in-process locks of shared backing files, by canonical path */
+	private static final Map<String, Object> _pathLocks = new HashMap<String, Object>();
+	private static ScheduledExecutorService _writer;
+
+	/**
+	 * Get the in-process lock of a shared backing file. Roots of the same
+	 * JVM sharing a file take it before the file lock, which the JVM does not
+	 * let two channels hold at once.
+	 *
+	 * @param file
+	 *            the backing file.
+	 * @return the lock object.
+	 * @throws IOException
+	 *             if the canonical path cannot be resolved.
+	 */
+	private static synchronized Object getPathLock(File file)
+			throws IOException {
+		String path = file.getCanonicalPath();
+		Object ret = _pathLocks.get(path);
+		if (ret == null) {
+			ret = new Object();
+			_pathLocks.put(path, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * Get the shared write-behind executor, creating it on first use. Its
+	 * single thread is a daemon, pending changes are written by the shutdown
+	 * hook.
+	 *
+	 * @return the write-behind executor.
+	 */
+	private static synchronized ScheduledExecutorService getWriter() {
+		if (_writer == null) {
+			ScheduledThreadPoolExecutor writer = new ScheduledThreadPoolExecutor(
+					1, new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = Executors.defaultThreadFactory()
+									.newThread(r);
+							thread.setName("ini4j-prefs-writer");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			writer.setRemoveOnCancelPolicy(true);
+			_writer = writer;
+		}
+		return _writer;
+	}
 
 	/**
 	 * Get INI location.
@@ -265,6 +408,21 @@ public class IniPreferences extends AbstractPreferences {
 		return location;
 	}
 
+	/**
+	 * Get a numeric setting from the system properties or the ini4j
+	 * properties.
+	 *
+	 * @param key
+	 *            the property key.
+	 * @param defaultValue
+	 *            value used when the property is missing.
+	 * @return the setting.
+	 */
+	private static long getLongProperty(String key, long defaultValue) {
+		String value = getIniLocation(key);
+		return value == null ? defaultValue : Long.parseLong(value.trim());
+	}
+
 	private static Logger getLogger() {
 		return Logger.getLogger("java.util.prefs");
 	}
@@ -417,13 +575,59 @@ public class IniPreferences extends AbstractPreferences {
 			throw (IllegalArgumentException) new IllegalArgumentException()
 					.initCause(ex);
 		}
-		return new IniPreferences(ini);
+		IniPreferences prefs = new IniPreferences(ini);
+		prefs.setWatch(getLongProperty(KEY_WATCH_INTERVAL, 0));
+		prefs.setWriteBehind(getLongProperty(KEY_WRITE_DELAY, 0),
+				(int) getLongProperty(KEY_MAX_PENDING, DEFAULT_MAX_PENDING),
+				getLongProperty(KEY_MAX_LATENCY, DEFAULT_MAX_LATENCY));
+		if (ini.getFile() != null) {
+			prefs.setShared(Boolean.parseBoolean(getIniLocation(KEY_SHARED)));
+			try {
+				prefs.setJournal(getLongProperty(KEY_JOURNAL_LIMIT, 0));
+			} catch (IOException x) {
+				throw (IllegalArgumentException) new IllegalArgumentException()
+						.initCause(x);
+			}
+		}
+		return prefs;
 	}
 
 	/** underlaying <code>Ini</code> implementation */
 	private final Ini _ini;
 	private volatile boolean change;
 	private volatile boolean ignoreChange;
+	/** identity of the backing file when last loaded or written, guarded by _ini */
+	private Object fileKey;
+	/** modification time of the backing file, guarded by _ini */
+	private Object fileModified;
+	/** size of the backing file, guarded by _ini */
+	private long fileSize = -1;
+	/** time of the oldest change not yet written, guarded by _ini */
+	private long firstPending;
+	/** change log of the backing file, guarded by _ini */
+	private PreferencesJournal journal;
+	private long journalLimit;
+	/** channel of the lock file in shared mode, guarded by _ini */
+	private FileChannel lockChannel;
+	private long maxLatency = DEFAULT_MAX_LATENCY;
+	private int maxPending = DEFAULT_MAX_PENDING;
+	/** file content merged by a shared store, not yet applied, guarded by _ini */
+	private Ini merged;
+	/** number of changes not yet written, guarded by _ini */
+	private int pending;
+	/** changes not yet written in shared mode, guarded by _ini */
+	private final List<Change> pendingChanges = new ArrayList<Change>();
+	/** thread applying a reload, its changes are not written back */
+	private volatile Thread reloader;
+	/** a reload has read the file but not yet applied it, guarded by _ini */
+	private boolean reloading;
+	/** scheduled write-behind store, guarded by _ini */
+	private ScheduledFuture<?> scheduled;
+	private boolean shared;
+	private Thread shutdownHook;
+	/** background file watcher, guarded by lock */
+	private PreferencesWatcher watcher;
+	private long writeDelay;
 
 	/**
 	 * Constructs a new preferences node on top of <code>Ini</code> instance.
@@ -434,6 +638,9 @@ public class IniPreferences extends AbstractPreferences {
 	public IniPreferences(Ini ini) {
 		super(null, "");
 		_ini = ini;
+		synchronized (_ini) {
+			isFileModified(true);
+		}
 	}
 
 	/**
@@ -530,23 +737,136 @@ public class IniPreferences extends AbstractPreferences {
 	 */
 	@Override
 	protected SectionPreferences childSpi(String name) {
-		Ini.Section sec = _ini.get(name);
-		boolean isNew = sec == null;
+		Ini.Section sec;
+		boolean isNew;
 
-		if (isNew) {
-			sec = _ini.add(name);
-			if (!ignoreChange) {
-				change = true;
-				store();
+		synchronized (_ini) {
+			sec = _ini.get(name);
+			isNew = sec == null;
+			if (isNew) {
+				sec = _ini.add(name);
+				if (!ignoreChange) {
+					changed(PreferencesJournal.ADD_NODE, sec.getName(), null,
+							null);
+				}
 			}
 		}
 
 		return new SectionPreferences(this, sec, isNew);
 	}
 
+	/**
+	 * Write a node as XML document from a consistent view of the tree.
+	 *
+	 * @param section
+	 *            the section of the node, or null for the root
+	 * @param os
+	 *            the output stream
+	 * @param subtree
+	 *            true to include all descendants
+	 * @throws IOException
+	 *             if an I/O error occurred
+	 * @throws IllegalStateException
+	 *             if the node has been removed
+	 */
+	private void export(Ini.Section section, OutputStream os, boolean subtree)
+			throws IOException {
+		synchronized (_ini) {
+			if (section != null && _ini.get(section.getName()) != section) {
+				throw new IllegalStateException("Node has been removed.");
+			}
+			new PreferencesXmlWriter(os, _ini).write(isUserNode(),
+					section == null ? null : section.getName(), subtree);
+		}
+	}
+
+	/**
+	 * Write the preferences below a node in ini format, as they would be
+	 * stored in the backing file. The header comment is written only for the
+	 * whole tree.
+	 *
+	 * @param path
+	 *            path of the node relative to this node, "" for the whole tree
+	 * @param os
+	 *            the output stream, it is flushed but not closed
+	 * @throws IOException
+	 *             if an I/O error occurred
+	 */
+	public void exportIni(String path, OutputStream os) throws IOException {
+		synchronized (_ini) {
+			if (path.length() == 0) {
+				_ini.store(os);
+				return;
+			}
+			String prefix = path + _ini.getPathSeparator();
+			IniFormatter formatter = IniFormatter.newInstance(os,
+					_ini.getConfig());
+			formatter.startIni();
+			for (Ini.Section section : _ini.values()) {
+				String name = section.getName();
+				if (name.equals(path) || name.startsWith(prefix)) {
+					_ini.store(formatter, section);
+				}
+			}
+			formatter.endIni();
+		}
+	}
+
+	/**
+	 * Implements the <CODE>exportNode</CODE> method as per the specification
+	 * in {@link java.util.prefs.Preferences#exportNode(OutputStream)}.
+	 * <p>
+	 * This implementation streams the XML document directly from the
+	 * underlaying <code>Ini</code>.
+	 *
+	 * @param os
+	 *            the output stream on which to emit the XML document.
+	 * @throws IOException
+	 *             if writing to the specified output stream results in an
+	 *             <tt>IOException</tt>.
+	 * @throws BackingStoreException
+	 *             if preference data cannot be read from backing store.
+	 */
+	@Override
+	public void exportNode(OutputStream os)
+			throws IOException, BackingStoreException {
+		export(null, os, false);
+	}
+
+	/**
+	 * Implements the <CODE>exportSubtree</CODE> method as per the
+	 * specification in
+	 * {@link java.util.prefs.Preferences#exportSubtree(OutputStream)}.
+	 * <p>
+	 * This implementation streams the XML document directly from the
+	 * underlaying <code>Ini</code>, without locking each node.
+	 *
+	 * @param os
+	 *            the output stream on which to emit the XML document.
+	 * @throws IOException
+	 *             if writing to the specified output stream results in an
+	 *             <tt>IOException</tt>.
+	 * @throws BackingStoreException
+	 *             if preference data cannot be read from backing store.
+	 */
+	@Override
+	public void exportSubtree(OutputStream os)
+			throws IOException, BackingStoreException {
+		export(null, os, true);
+	}
+
+	/**
+	 * Implements the <CODE>flushSpi</CODE> method as per the specification in
+	 * {@link java.util.prefs.AbstractPreferences#flushSpi()}.
+	 * <p>
+	 * This implementation writes pending changes immediately, bypassing the
+	 * write-behind delay.
+	 */
 	@Override
 	protected void flushSpi() {
-		store();
+		synchronized (_ini) {
+			store();
+		}
 	}
 
 	/**
@@ -578,6 +898,55 @@ public class IniPreferences extends AbstractPreferences {
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * Merge preferences in ini format into this tree, as
+	 * {@link java.util.prefs.Preferences#importPreferences(InputStream)} does
+	 * for XML: values of the imported keys are replaced, other keys and nodes
+	 * are kept. The changes are written with a single store, and registered
+	 * listeners are not notified.
+	 *
+	 * @param is
+	 *            input stream in ini format, it is not closed
+	 * @throws IOException
+	 *             if an I/O error occurred
+	 * @throws InvalidFileFormatException
+	 *             if the input is not a valid ini file
+	 */
+	public void importIni(InputStream is)
+			throws IOException, InvalidFileFormatException {
+		Ini input = new Ini();
+		input.setConfig(_ini.getConfig());
+		input.load(is);
+		synchronized (_ini) {
+			int count = 0;
+			for (Ini.Section section : input.values()) {
+				String name = section.getName();
+				Ini.Section target = _ini.get(name);
+				if (target == null) {
+					target = _ini.add(name);
+					record(PreferencesJournal.ADD_NODE, name, null, null);
+					count++;
+				}
+				for (String key : section.keySet()) {
+					List<String> values = section.getAll(key);
+					if (!values.equals(target.getAll(key))) {
+						target.remove(key);
+						byte op = PreferencesJournal.PUT;
+						for (String value : values) {
+							target.add(key, value);
+							record(op, name, key, value);
+							op = PreferencesJournal.ADD;
+						}
+						count++;
+					}
+				}
+			}
+			if (count > 0) {
+				commit(count);
+			}
+		}
+	}
+
 	/**
 	 * Implements the <CODE>keysSpi</CODE> method as per the specification in
 	 * {@link java.util.prefs.AbstractPreferences#keysSpi()}.
@@ -654,29 +1023,626 @@ public class IniPreferences extends AbstractPreferences {
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * Record a change of the underlaying <code>Ini</code>. With a journal the
+	 * change is appended to it, without write-behind the file is written
+	 * immediately, otherwise a store is scheduled on the background writer.
+	 * Must be called holding the <code>Ini</code> lock.
+	 *
+	 * @param op
+	 *            journal operation
+	 * @param section
+	 *            name of the changed section
+	 * @param key
+	 *            changed key, or null for node operations
+	 * @param value
+	 *            new value, or null unless op is a put
+	 */
+	private void changed(byte op, String section, String key, String value) {
+		if (Thread.currentThread() == reloader) {
+			return;
+		}
+		record(op, section, key, value);
+		commit(1);
+	}
+
+	/**
+	 * Write recorded changes, or schedule writing them. Must be called
+	 * holding the <code>Ini</code> lock.
+	 *
+	 * @param count
+	 *            number of changes recorded since the last call
+	 */
+	private void commit(int count) {
+		if (journal != null) {
+			try {
+				if (journal.size() > journalLimit) {
+					compact();
+				}
+			} catch (IOException e) {
+				getLogger().warning(e.toString());
+			}
+			return;
+		}
+		if (writeDelay <= 0) {
+			store();
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (pending == 0) {
+			firstPending = now;
+		}
+		pending += count;
+		long delay = Math.min(writeDelay, firstPending + maxLatency - now);
+		if (pending >= maxPending) {
+			delay = 0;
+		}
+		schedule(Math.max(delay, 0));
+	}
+
+	/**
+	 * Remember a change of the underlaying <code>Ini</code> without writing
+	 * it. Must be called holding the <code>Ini</code> lock.
+	 *
+	 * @param op
+	 *            journal operation
+	 * @param section
+	 *            name of the changed section
+	 * @param key
+	 *            changed key, or null for node operations
+	 * @param value
+	 *            new value, or null unless op is a put
+	 */
+	private void record(byte op, String section, String key, String value) {
+		change = true;
+		if (shared) {
+			pendingChanges.add(new Change(op, section, key, value));
+		}
+		if (journal != null) {
+			try {
+				journal.append(op, section, key, value);
+			} catch (IOException e) {
+				getLogger().warning(e.toString());
+			}
+		}
+	}
+
+	/**
+	 * Write the whole file and empty the journal. Must be called holding the
+	 * <code>Ini</code> lock.
+	 *
+	 * @throws IOException
+	 *             if the journal cannot be truncated
+	 */
+	private void compact() throws IOException {
+		change = false;
+		if (storeFile()) {
+			journal.reset();
+		} else {
+			change = true;
+		}
+	}
+
+	/**
+	 * Configure the change journal. Each change is appended to a log next to
+	 * the backing file instead of rewriting the file, and the log is folded
+	 * back into the file once it grows past <code>limit</code> bytes. An
+	 * existing log is replayed when the journal is enabled, so changes made
+	 * before a crash are recovered. <code>flush()</code> and
+	 * <code>sync()</code> force the log to disk.
+	 *
+	 * @param limit
+	 *            size of the log in bytes triggering compaction, 0 disables
+	 *            the journal after compacting it
+	 * @throws IOException
+	 *             if the journal cannot be opened, replayed or compacted
+	 */
+	public void setJournal(long limit) throws IOException {
+		synchronized (_ini) {
+			if (limit > 0 && journal == null) {
+				if (_ini.getFile() == null) {
+					throw new IllegalStateException("No backing file");
+				}
+				if (shared) {
+					throw new IllegalStateException("Shared mode is enabled");
+				}
+				journal = new PreferencesJournal(_ini.getFile());
+				if (journal.replay(_ini) > 0) {
+					change = true;
+				}
+			} else if (limit <= 0 && journal != null) {
+				if (change) {
+					compact();
+				}
+				journal.close();
+				journal = null;
+			}
+			journalLimit = limit;
+			updateShutdownHook();
+		}
+	}
+
+	/**
+	 * Configure the background watcher of the backing file. Changes made by
+	 * other processes are applied as if <code>sync()</code> was called, so
+	 * registered listeners are notified. A <code>WatchService</code> is used
+	 * where available, otherwise the file is checked every
+	 * <code>interval</code> milliseconds.
+	 *
+	 * @param interval
+	 *            polling interval in milliseconds, 0 stops watching
+	 */
+	public void setWatch(long interval) {
+		synchronized (lock) {
+			if (watcher != null) {
+				watcher.close();
+				watcher = null;
+			}
+			if (interval > 0 && _ini.getFile() != null) {
+				watcher = new PreferencesWatcher(_ini.getFile(), interval,
+						newReloader());
+				watcher.start(getWriter());
+			}
+		}
+	}
+
+	/**
+	 * Configure shared mode, for a backing file written by several processes.
+	 * Writers lock a file next to the backing file. When another process
+	 * wrote the backing file since this one last saw it, pending changes are
+	 * replayed on top of its current content instead of overwriting it, and
+	 * the other changes are then applied to this tree. Reads never lock, so
+	 * shared mode requires the atomic store of the <code>Ini</code> config:
+	 * readers then see either the old or the new file, never a partial one.
+	 *
+	 * @param shared
+	 *            true to enable shared mode
+	 */
+	public void setShared(boolean shared) {
+		synchronized (_ini) {
+			if (shared && journal != null) {
+				throw new IllegalStateException("Journal is enabled");
+			}
+			if (shared && _ini.getFile() == null) {
+				throw new IllegalStateException("No backing file");
+			}
+			if (shared && !_ini.getConfig().isAtomicStore()) {
+				throw new IllegalStateException("Atomic store is disabled");
+			}
+			if (!shared && lockChannel != null) {
+				try {
+					lockChannel.close();
+				} catch (IOException e) {
+					getLogger().warning(e.toString());
+				}
+				lockChannel = null;
+			}
+			pendingChanges.clear();
+			this.shared = shared;
+		}
+	}
+
+	/**
+	 * Configure write-behind. Changes are coalesced and written by a
+	 * background thread once no further change arrived for
+	 * <code>delay</code> milliseconds, but no later than
+	 * <code>maxLatency</code> milliseconds after the first pending change or
+	 * when <code>maxPending</code> changes are waiting. <code>flush()</code>,
+	 * <code>sync()</code> and JVM shutdown write pending changes
+	 * immediately.
+	 *
+	 * @param delay
+	 *            quiet period in milliseconds, 0 disables write-behind
+	 * @param maxPending
+	 *            number of pending changes forcing a store
+	 * @param maxLatency
+	 *            longest time in milliseconds a change may stay pending
+	 */
+	public void setWriteBehind(long delay, int maxPending, long maxLatency) {
+		synchronized (_ini) {
+			this.writeDelay = delay;
+			this.maxPending = Math.max(maxPending, 1);
+			this.maxLatency = Math.max(maxLatency, 0);
+			if (delay <= 0) {
+				store();
+			}
+			updateShutdownHook();
+		}
+	}
+
+	/**
+	 * Make sure pending changes are written when the JVM exits while
+	 * write-behind or the journal is enabled, and release the hook, which
+	 * holds this tree, once both are disabled. Must be called holding the
+	 * <code>Ini</code> lock.
+	 */
+	private void updateShutdownHook() {
+		boolean needed = writeDelay > 0 || journal != null;
+		if (needed && shutdownHook == null) {
+			shutdownHook = new Thread("ini4j-prefs-shutdown") {
+				@Override
+				public void run() {
+					synchronized (_ini) {
+						store();
+					}
+				}
+			};
+			Runtime.getRuntime().addShutdownHook(shutdownHook);
+		} else if (!needed && shutdownHook != null) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (IllegalStateException e) {
+				// the JVM is already exiting, the hook runs anyway
+			}
+			shutdownHook = null;
+		}
+	}
+
+	/**
+	 * Compare the backing file with the state seen when it was last loaded or
+	 * written. Must be called holding the <code>Ini</code> lock.
+	 *
+	 * @param record
+	 *            remember the current state of the file
+	 * @return true if the file exists and differs from the remembered state.
+	 */
+	private boolean isFileModified(boolean record) {
+		File file = _ini.getFile();
+		if (file == null) {
+			return false;
+		}
+		BasicFileAttributes attrs;
+		try {
+			attrs = Files.readAttributes(file.toPath(),
+					BasicFileAttributes.class);
+		} catch (IOException e) {
+			return false;
+		}
+		Object key = attrs.fileKey();
+		boolean modified = attrs.size() != fileSize
+				|| !attrs.lastModifiedTime().equals(fileModified)
+				|| (key != null && !key.equals(fileKey));
+		if (record) {
+			fileKey = key;
+			fileModified = attrs.lastModifiedTime();
+			fileSize = attrs.size();
+		}
+		return modified;
+	}
+
+	/**
+	 * Reparse the backing file if another process changed it and apply the
+	 * differences through the preferences API, so listeners are notified of
+	 * each changed key. Changes kept in the journal or pending in shared mode
+	 * are replayed on top of the file. Otherwise local changes not yet written
+	 * win and the file is left to be overwritten. Must be called holding the
+	 * root lock.
+	 *
+	 * @throws BackingStoreException
+	 *             if the file cannot be parsed.
+	 */
+	private void reload() throws BackingStoreException {
+		List<Change> diff = new ArrayList<Change>();
+		synchronized (_ini) {
+			Ini fresh = merged;
+			merged = null;
+			if (fresh == null) {
+				if ((change && journal == null && !shared)
+						|| !isFileModified(false)) {
+					return;
+				}
+				// recorded before parsing, a write landing during the parse
+				// is seen by the next reload
+				isFileModified(true);
+				fresh = new Ini();
+				fresh.setConfig(_ini.getConfig());
+				try {
+					fresh.load(_ini.getFile());
+					if (journal != null) {
+						journal.replay(fresh);
+					}
+				} catch (IOException e) {
+					fileSize = -1;
+					throw new BackingStoreException(e);
+				}
+			}
+			for (Change c : pendingChanges) {
+				PreferencesJournal.apply(fresh, c.op, c.section, c.key,
+						c.value);
+			}
+			// nodes created by lookup are not changes, empty ones are kept
+			for (Ini.Section section : _ini.values()) {
+				String name = section.getName();
+				if (!section.isEmpty() && !fresh.containsKey(name)) {
+					diff.add(new Change(PreferencesJournal.REMOVE_NODE, name,
+							null, null));
+				}
+			}
+			for (Ini.Section section : fresh.values()) {
+				String name = section.getName();
+				Ini.Section current = _ini.get(name);
+				if (current == null) {
+					diff.add(new Change(PreferencesJournal.ADD_NODE, name, null,
+							null));
+				}
+				for (String key : section.keySet()) {
+					String value = section.get(key);
+					if (value != null && (current == null
+							|| !value.equals(current.get(key)))) {
+						diff.add(new Change(PreferencesJournal.PUT, name, key,
+								value));
+					}
+				}
+				if (current != null) {
+					for (String key : current.keySet()) {
+						if (!section.containsKey(key)) {
+							diff.add(new Change(PreferencesJournal.REMOVE, name,
+									key, null));
+						}
+					}
+				}
+			}
+			reloading = true;
+		}
+		reloader = Thread.currentThread();
+		try {
+			for (Change c : diff) {
+				try {
+					apply(c);
+				} catch (IllegalArgumentException e) {
+					getLogger().warning(e.toString());
+				}
+			}
+		} finally {
+			reloader = null;
+			synchronized (_ini) {
+				reloading = false;
+			}
+		}
+	}
+
+	/**
+	 * Apply a change through the preferences API.
+	 *
+	 * @param c
+	 *            the change.
+	 * @throws BackingStoreException
+	 *             if the node cannot be looked up.
+	 */
+	private void apply(Change c) throws BackingStoreException {
+		switch (c.op) {
+		case PreferencesJournal.ADD_NODE:
+			node(c.section);
+			break;
+		case PreferencesJournal.PUT:
+			node(c.section).put(c.key, c.value);
+			break;
+		case PreferencesJournal.REMOVE:
+			if (nodeExists(c.section)) {
+				node(c.section).remove(c.key);
+			}
+			break;
+		case PreferencesJournal.REMOVE_NODE:
+			if (nodeExists(c.section)) {
+				node(c.section).removeNode();
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Create a task applying changes of the backing file in the background.
+	 *
+	 * @return the task.
+	 */
+	private Runnable newReloader() {
+		return new Runnable() {
+			@Override
+			public void run() {
+				synchronized (lock) {
+					try {
+						reload();
+					} catch (BackingStoreException e) {
+						getLogger().warning(e.toString());
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Schedule a write-behind store, replacing the one already scheduled.
+	 *
+	 * @param delay
+	 *            delay in milliseconds.
+	 */
+	private void schedule(long delay) {
+		if (scheduled != null) {
+			scheduled.cancel(false);
+		}
+		scheduled = getWriter().schedule(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (_ini) {
+					store();
+				}
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Write the underlaying <code>Ini</code> if it has unsaved changes. Must
+	 * be called holding the <code>Ini</code> lock.
+	 */
 	private void store() {
+		pending = 0;
+		if (scheduled != null) {
+			scheduled.cancel(false);
+			scheduled = null;
+		}
 		if (!change) {
 			return;
 		}
+		if (journal != null) {
+			try {
+				journal.force();
+			} catch (IOException e) {
+				getLogger().warning(e.toString());
+			}
+			return;
+		}
 		change = false;
+		if (shared) {
+			if (!storeShared()) {
+				change = true;
+			}
+		} else {
+			storeFile();
+		}
+	}
+
+	/**
+	 * Write pending changes holding an exclusive lock on a file next to the
+	 * backing file. If the backing file was written by another process since
+	 * it was last seen, or a reload has not been applied yet, the pending
+	 * changes are replayed on top of the current content, which is then
+	 * applied to this tree in the background. The content is parsed before
+	 * locking, the lock only covers checking that the file is still the
+	 * parsed one, replaying and writing. Must be called holding the
+	 * <code>Ini</code> lock.
+	 *
+	 * @return true if the file was written.
+	 */
+	private boolean storeShared() {
+		final File file = _ini.getFile();
+		try {
+			Ini fresh = null;
+			Object seen = null;
+			if (merged != null || reloading || isFileModified(false)) {
+				seen = getStamp(file);
+				fresh = loadShared(file);
+			}
+			synchronized (getPathLock(file)) {
+				if (lockChannel == null) {
+					lockChannel = FileChannel.open(
+							new File(file.getPath() + LOCK_SUFFIX).toPath(),
+							StandardOpenOption.CREATE,
+							StandardOpenOption.WRITE);
+				}
+				FileLock fileLock = lockChannel.lock();
+				try {
+					// written again since parsed or checked, parse it locked
+					if (fresh == null ? isFileModified(false)
+							: !getStamp(file).equals(seen)) {
+						fresh = loadShared(file);
+					}
+					if (fresh == null) {
+						_ini.store(file);
+					} else {
+						for (Change c : pendingChanges) {
+							PreferencesJournal.apply(fresh, c.op, c.section,
+									c.key, c.value);
+						}
+						fresh.store(file);
+						merged = fresh;
+					}
+					isFileModified(true);
+				} finally {
+					fileLock.release();
+				}
+			}
+		} catch (IOException e) {
+			getLogger().warning(e.toString());
+			return false;
+		} catch (OverlappingFileLockException e) {
+			getLogger().warning(e.toString());
+			return false;
+		}
+		pendingChanges.clear();
+		if (merged != null) {
+			getWriter().execute(newReloader());
+		}
+		return true;
+	}
+
+	/**
+	 * Parse the current content of a shared backing file.
+	 *
+	 * @param file
+	 *            the backing file.
+	 * @return the content, empty if the file does not exist.
+	 * @throws IOException
+	 *             if the file cannot be read or parsed.
+	 */
+	private Ini loadShared(File file) throws IOException {
+		Ini ret = new Ini();
+		ret.setConfig(_ini.getConfig());
+		if (file.exists()) {
+			ret.load(file);
+		}
+		return ret;
+	}
+
+	/**
+	 * Get the identity, modification time and size of a file, to tell
+	 * whether it was written between two reads.
+	 *
+	 * @param file
+	 *            the file.
+	 * @return the stamp, an empty list if the file cannot be read.
+	 */
+	private static Object getStamp(File file) {
+		try {
+			BasicFileAttributes attrs = Files.readAttributes(file.toPath(),
+					BasicFileAttributes.class);
+			return Arrays.asList(attrs.fileKey(), attrs.lastModifiedTime(),
+					attrs.size());
+		} catch (IOException e) {
+			return Arrays.asList();
+		}
+	}
+
+	/**
+	 * Write the underlaying <code>Ini</code> into its file. A writable file in
+	 * a read only directory cannot be replaced atomically, it is then
+	 * overwritten in place.
+	 *
+	 * @return true if the file was written.
+	 */
+	private boolean storeFile() {
 		try {
 			final File file = _ini.getFile();
 			if (file != null && (!file.exists() || file.canWrite())) {
-				try (FileOutputStream fos = new FileOutputStream(file)) {
-					_ini.store(fos);
+				File dir = file.getAbsoluteFile().getParentFile();
+				if (file.exists() && _ini.getConfig().isAtomicStore()
+						&& dir != null && !dir.canWrite()) {
+					OutputStream os = new FileOutputStream(file);
+					try {
+						_ini.store(os);
+					} finally {
+						os.close();
+					}
+				} else {
+					_ini.store(file);
 				}
+				isFileModified(true);
+				return true;
 			}
 		} catch (FileNotFoundException e) {
 		} catch (IOException e) {
 			getLogger().warning(e.toString());
 		}
+		return false;
 	}
 
 	/**
 	 * Implements the <CODE>syncSpi</CODE> method as per the specification in
 	 * {@link java.util.prefs.AbstractPreferences#syncSpi()}.
 	 * <p>
-	 * This implementation does nothing.
+	 * This implementation applies changes made to the backing file by other
+	 * processes, then writes pending changes immediately.
 	 *
 	 * @throws BackingStoreException
 	 *             if this operation cannot be completed due to a failure in the
@@ -684,6 +1650,9 @@ public class IniPreferences extends AbstractPreferences {
 	 */
 	@Override
 	protected void syncSpi() throws BackingStoreException {
-		assert true;
+		reload();
+		synchronized (_ini) {
+			store();
+		}
 	}
 }
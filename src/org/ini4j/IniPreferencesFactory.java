@@ -23,6 +23,18 @@ public class IniPreferencesFactory implements PreferencesFactory {
 	public static final String KEY_SYSTEM = "org.ini4j.prefs.system";
 	/** Key for the user preferences */
 	public static final String KEY_USER = "org.ini4j.prefs.user";
+	/** Key for the write-behind delay in milliseconds, 0 stores immediately */
+	public static final String KEY_WRITE_DELAY = "org.ini4j.prefs.writeDelay";
+	/** Key for the number of pending changes forcing a write-behind store */
+	public static final String KEY_MAX_PENDING = "org.ini4j.prefs.maxPending";
+	/** Key for the longest time in milliseconds a change may stay pending */
+	public static final String KEY_MAX_LATENCY = "org.ini4j.prefs.maxLatency";
+	/** Key for the journal size in bytes triggering compaction, 0 disables */
+	public static final String KEY_JOURNAL_LIMIT = "org.ini4j.prefs.journalLimit";
+	/** Key for the backing file polling interval in milliseconds, 0 disables */
+	public static final String KEY_WATCH_INTERVAL = "org.ini4j.prefs.watchInterval";
+	/** Key enabling locking and merging writes of several processes */
+	public static final String KEY_SHARED = "org.ini4j.prefs.shared";
 	/** Ini4j properties */
 	public static final String PROPERTIES = "ini4j.properties";
 
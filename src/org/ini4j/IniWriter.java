@@ -0,0 +1,200 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j;
+
+import org.ini4j.spi.BlockWriter;
+import org.ini4j.spi.IniFormatter;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes an ini file section by section without building an Ini in memory.
+ *
+ * The output is the same as Ini.store would produce for the equivalent
+ * profile: the first comment becomes the header comment, comments before a
+ * section or option are attached to it, and empty sections are left out
+ * unless the emptySection flag is set.
+ */
+public class IniWriter implements Closeable, Flushable
+{
+    private boolean _closed;
+    private String _comment;
+    private final Config _config;
+    private final IniFormatter _formatter;
+    private boolean _header = true;
+    private final PrintWriter _output;
+    private String _section;
+    private String _sectionComment;
+    private boolean _sections;
+    private boolean _started;
+
+    public IniWriter(Writer output)
+    {
+        this(output, Config.getGlobal());
+    }
+
+    public IniWriter(Writer output, Config config)
+    {
+        _output = (output instanceof PrintWriter) ? (PrintWriter) output : new PrintWriter(output);
+        _config = config;
+        _formatter = IniFormatter.newInstance(_output, config);
+        _formatter.startIni();
+    }
+
+    public IniWriter(OutputStream output, Config config)
+    {
+        this(new BlockWriter(output, config.getFileEncoding()), config);
+    }
+
+    public IniWriter(WritableByteChannel output, Config config)
+    {
+        this(new BlockWriter(output, config.getFileEncoding()), config);
+    }
+
+    public Config getConfig()
+    {
+        return _config;
+    }
+
+    @Override public void close() throws IOException
+    {
+        if (!_closed)
+        {
+            _closed = true;
+            endSection();
+            if (_comment != null)
+            {
+                startIni();
+                _formatter.handleComment(_comment);
+                _comment = null;
+            }
+
+            _formatter.endIni();
+            checkError();
+            _output.close();
+        }
+    }
+
+    public void comment(String text)
+    {
+        if (_header && _config.isHeaderComment())
+        {
+            _header = false;
+            _formatter.handleComment(text);
+        }
+        else if (text != null)
+        {
+            _comment = (_comment == null) ? text : (_comment + _config.getLineSeparator() + text);
+        }
+    }
+
+    @Override public void flush() throws IOException
+    {
+        checkError();
+    }
+
+    public void option(String name, String value)
+    {
+        if (_section == null)
+        {
+            if (_config.isGlobalSection() && !_sections)
+            {
+                section(_config.getGlobalSectionName());
+            }
+            else
+            {
+                throw new IllegalStateException("Option outside of section: " + name);
+            }
+        }
+
+        startSection();
+        _formatter.handleComment(_comment);
+        _comment = null;
+        _formatter.handleOption(name, value);
+    }
+
+    public void section(String name)
+    {
+        if (_sections && _config.isGlobalSection() && name.equals(_config.getGlobalSectionName()))
+        {
+            throw new IllegalStateException("Global section must be the first section");
+        }
+
+        endSection();
+        startIni();
+        _sections = true;
+        _section = name;
+        _sectionComment = _comment;
+        _comment = null;
+        _started = false;
+    }
+
+    private void checkError() throws IOException
+    {
+        if (_output.checkError())
+        {
+            IOException x = (_output instanceof BlockWriter) ? ((BlockWriter) _output).getException() : null;
+
+            throw (x == null) ? new IOException("Error writing output") : x;
+        }
+    }
+
+    private void endSection()
+    {
+        if (_section != null)
+        {
+            if (!_started && _config.isEmptySection())
+            {
+                startSection();
+            }
+
+            if (_started)
+            {
+                _formatter.endSection();
+            }
+
+            _section = null;
+            _sectionComment = null;
+        }
+    }
+
+    private void startIni()
+    {
+        if (_header)
+        {
+            _header = false;
+            _formatter.handleComment(null);
+        }
+    }
+
+    private void startSection()
+    {
+        if (!_started)
+        {
+            _started = true;
+            _formatter.handleComment(_sectionComment);
+            _sectionComment = null;
+            _formatter.startSection(_section);
+        }
+    }
+}
@@ -41,6 +41,20 @@ public interface OptionMap extends MultiMap<String, String>, CommentedMap<String
 
     <T> T fetchAll(Object key, Class<T> clazz);
 
+    boolean fetchBoolean(Object key, boolean defaultValue);
+
+    double fetchDouble(Object key, double defaultValue);
+
+    double[] fetchDoubleArray(Object key);
+
+    int fetchInt(Object key, int defaultValue);
+
+    int[] fetchIntArray(Object key);
+
+    long fetchLong(Object key, long defaultValue);
+
+    long[] fetchLongArray(Object key);
+
     void from(Object bean);
 
     void from(Object bean, String keyPrefix);
@@ -53,6 +67,20 @@ public interface OptionMap extends MultiMap<String, String>, CommentedMap<String
 
     <T> T get(Object key, int index, Class<T> clazz);
 
+    boolean getBoolean(Object key, boolean defaultValue);
+
+    double getDouble(Object key, double defaultValue);
+
+    double[] getDoubleArray(Object key);
+
+    int getInt(Object key, int defaultValue);
+
+    int[] getIntArray(Object key);
+
+    long getLong(Object key, long defaultValue);
+
+    long[] getLongArray(Object key);
+
     String put(String key, Object value);
 
     String put(String key, Object value, int index);
@@ -15,6 +15,8 @@
  */
 package org.ini4j;
 
+import org.ini4j.spi.AtomicFileOutputStream;
+import org.ini4j.spi.IniMetrics;
 import org.ini4j.spi.OptionsBuilder;
 import org.ini4j.spi.OptionsFormatter;
 import org.ini4j.spi.OptionsHandler;
@@ -22,17 +24,20 @@ import org.ini4j.spi.OptionsParser;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 
 import java.net.URL;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
 public class Options extends BasicOptionMap implements Persistable, Configurable
 {
     private static final long serialVersionUID = -1119753444859181822L;
@@ -46,6 +51,14 @@ public class Options extends BasicOptionMap implements Persistable, Configurable
         _config.setEmptyOption(true);
     }
 
+    // pre-sized for the given number of options
+    public Options(int capacity)
+    {
+        super(new LinkedHashMap<String, List<String>>(((capacity * 4) / 3) + 1), false);
+        _config = Config.getGlobal().clone();
+        _config.setEmptyOption(true);
+    }
+
     public Options(Reader input) throws IOException, InvalidFileFormatException
     {
         this();
@@ -71,6 +84,27 @@ public class Options extends BasicOptionMap implements Persistable, Configurable
         load();
     }
 
+    // copies the string properties, including the defaults, as they are
+    public static Options from(Properties properties)
+    {
+        Set<String> names = properties.stringPropertyNames();
+        Options ret = new Options(names.size());
+
+        for (String name : names)
+        {
+            ret.put(name, properties.getProperty(name));
+        }
+
+        return ret;
+    }
+
+    // the returned map reads and writes the properties directly, it keeps
+    // one value per option and the comments only in the map itself
+    public static OptionMap view(Properties properties)
+    {
+        return new PropertiesOptionMap(properties);
+    }
+
     public String getComment()
     {
         return _comment;
@@ -143,7 +177,7 @@ public class Options extends BasicOptionMap implements Persistable, Configurable
 
     @Override public void store(OutputStream output) throws IOException
     {
-        store(new OutputStreamWriter(output, getConfig().getFileEncoding()));
+        store(OptionsFormatter.newInstance(output, getConfig()));
     }
 
     @Override public void store(Writer output) throws IOException
@@ -153,10 +187,23 @@ public class Options extends BasicOptionMap implements Persistable, Configurable
 
     @Override public void store(File output) throws IOException
     {
-        OutputStream stream = new FileOutputStream(output);
+        AtomicFileOutputStream.store(this, output, getConfig());
+    }
+
+    // the last value of each option, as Properties.load would keep it, and
+    // an empty string for options without value
+    public Properties toProperties()
+    {
+        Properties ret = new Properties();
+
+        for (String name : keySet())
+        {
+            String value = get(name);
+
+            ret.put(name, (value == null) ? "" : value);
+        }
 
-        store(stream);
-        stream.close();
+        return ret;
     }
 
     protected OptionsHandler newBuilder()
@@ -184,6 +231,11 @@ public class Options extends BasicOptionMap implements Persistable, Configurable
         formatter.endOptions();
     }
 
+    @Override IniMetrics getMetrics()
+    {
+        return getConfig().getMetrics();
+    }
+
     @Override boolean isPropertyFirstUpper()
     {
         return getConfig().isPropertyFirstUpper();
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j;
+
+import org.ini4j.spi.BlockWriter;
+import org.ini4j.spi.IniFormatter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import java.nio.charset.Charset;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Formats batches of sections concurrently, each with its own formatter and
+ * buffer, and writes the buffers out in section order.
+ *
+ * Only a few batches are kept ahead of the writer, so memory stays bounded
+ * by the batch size rather than by the size of the profile.
+ */
+final class ParallelStore
+{
+    private static final int BATCHES_PER_THREAD = 8;
+    private static final int MIN_BATCH = 64;
+    private static final int WINDOW_PER_THREAD = 2;
+
+    private ParallelStore()
+    {
+    }
+
+    static ForkJoinPool getPool()
+    {
+        return PoolHolder.POOL;
+    }
+
+    static boolean isSupported(Ini ini)
+    {
+        return (ini.size() >= (2 * MIN_BATCH)) && isStateless(ini.getConfig().getFileEncoding());
+    }
+
+    static void store(Ini ini, OutputStream output) throws IOException
+    {
+        store(ini, output, ini.getConfig().getFileEncoding());
+        output.flush();
+    }
+
+    static void store(Ini ini, Writer output) throws IOException
+    {
+        store(ini, output, null);
+        output.flush();
+    }
+
+    private static boolean isStateless(Charset charset)
+    {
+        return "\n\n".getBytes(charset).length == (2 * "\n".getBytes(charset).length);
+    }
+
+    private static void store(Ini ini, Object output, Charset charset) throws IOException
+    {
+        ForkJoinPool pool = getPool();
+        List<Profile.Section> sections = new ArrayList<Profile.Section>(ini.values());
+        int batch = Math.max(MIN_BATCH, sections.size() / (pool.getParallelism() * BATCHES_PER_THREAD));
+        int window = pool.getParallelism() * WINDOW_PER_THREAD;
+        Deque<ForkJoinTask<Object>> pending = new ArrayDeque<ForkJoinTask<Object>>();
+
+        try
+        {
+            write(output, new Batch(ini, null, charset).invoke());
+            for (int from = 0; from < sections.size(); from += batch)
+            {
+                pending.add(pool.submit(new Batch(ini, sections.subList(from, Math.min(from + batch, sections.size())), charset)));
+                if (pending.size() > window)
+                {
+                    write(output, pending.removeFirst().join());
+                }
+            }
+
+            while (!pending.isEmpty())
+            {
+                write(output, pending.removeFirst().join());
+            }
+        }
+        finally
+        {
+            for (ForkJoinTask<Object> task : pending)
+            {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private static void write(Object output, Object data) throws IOException
+    {
+        if (output instanceof OutputStream)
+        {
+            ((OutputStream) output).write((byte[]) data);
+        }
+        else
+        {
+            ((Writer) output).write((String) data);
+        }
+    }
+
+    private static final class Batch extends RecursiveTask<Object>
+    {
+        private static final long serialVersionUID = 6237186745512083421L;
+        private final Charset _charset;
+        private final Ini _ini;
+        private final List<Profile.Section> _sections;
+
+        private Batch(Ini ini, List<Profile.Section> sections, Charset charset)
+        {
+            _ini = ini;
+            _sections = sections;
+            _charset = charset;
+        }
+
+        @Override protected Object compute()
+        {
+            ByteArrayOutputStream bytes = null;
+            StringWriter chars = null;
+            IniFormatter formatter;
+
+            if (_charset == null)
+            {
+                chars = new StringWriter();
+                formatter = IniFormatter.newInstance(chars, _ini.getConfig());
+            }
+            else
+            {
+                bytes = new ByteArrayOutputStream();
+                formatter = IniFormatter.newInstance(new BlockWriter(bytes, _charset), _ini.getConfig());
+            }
+
+            // the header comment is formatted once, ahead of the first batch
+            if (_sections == null)
+            {
+                formatter.startIni();
+                _ini.store(formatter, _ini.getComment());
+            }
+            else
+            {
+                formatter.handleComment(null);
+                for (Profile.Section section : _sections)
+                {
+                    _ini.store(formatter, section);
+                }
+            }
+
+            formatter.endIni();
+
+            return (_charset == null) ? chars.toString() : bytes.toByteArray();
+        }
+    }
+
+    private static final class PoolHolder
+    {
+        private static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of preference changes kept next to the ini file.
+ *
+ * Every record carries its length and checksum, replay stops at the first
+ * incomplete record and cuts it off. Records set or remove values rather than
+ * modify them, so replaying a log over a file which already contains some of
+ * its changes gives the same result. Further values of a multi-valued key are
+ * added right after the record setting its first value.
+ */
+final class PreferencesJournal
+{
+    static final byte ADD_NODE = 1;
+    static final byte PUT = 2;
+    static final byte REMOVE = 3;
+    static final byte REMOVE_NODE = 4;
+    static final byte ADD = 5;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String SUFFIX = ".journal";
+    private static final int HEADER_SIZE = 8;
+    private final FileChannel _channel;
+    private final ByteArrayOutputStream _record = new ByteArrayOutputStream();
+    private final DataOutputStream _output = new DataOutputStream(_record);
+
+    PreferencesJournal(File file) throws IOException
+    {
+        _channel = FileChannel.open(new File(file.getPath() + SUFFIX).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    static void apply(Ini ini, byte op, String name, String key, String value)
+    {
+        Profile.Section section = ini.get(name);
+
+        switch (op)
+        {
+
+            case ADD_NODE:
+                if (section == null)
+                {
+                    ini.add(name);
+                }
+
+                break;
+
+            case PUT:
+                if (section == null)
+                {
+                    section = ini.add(name);
+                }
+
+                section.put(key, value);
+                break;
+
+            case REMOVE:
+                if (section != null)
+                {
+                    section.remove(key);
+                }
+
+                break;
+
+            case REMOVE_NODE:
+                ini.remove(name);
+                break;
+
+            case ADD:
+                if (section == null)
+                {
+                    section = ini.add(name);
+                }
+
+                section.add(key, value);
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    void append(byte op, String section, String key, String value) throws IOException
+    {
+        _record.reset();
+        _output.writeInt(0);
+        _output.writeInt(0);
+        _output.writeByte(op);
+        writeString(section);
+        if ((op == PUT) || (op == REMOVE) || (op == ADD))
+        {
+            writeString(key);
+        }
+
+        if ((op == PUT) || (op == ADD))
+        {
+            writeString(value);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(_record.toByteArray());
+        CRC32 crc = new CRC32();
+
+        crc.update(buffer.array(), HEADER_SIZE, buffer.limit() - HEADER_SIZE);
+        buffer.putInt(0, buffer.limit() - HEADER_SIZE);
+        buffer.putInt(4, (int) crc.getValue());
+        for (long pos = _channel.size(); buffer.hasRemaining();)
+        {
+            pos += _channel.write(buffer, pos);
+        }
+    }
+
+    void close() throws IOException
+    {
+        _channel.close();
+    }
+
+    void force() throws IOException
+    {
+        _channel.force(false);
+    }
+
+    int replay(Ini ini) throws IOException
+    {
+        long size = _channel.size();
+        ByteBuffer data = ByteBuffer.allocate((int) size);
+
+        while (data.hasRemaining() && (_channel.read(data, data.position()) > 0))
+        {
+            assert true;
+        }
+
+        data.flip();
+        int count = 0;
+        int valid = 0;
+        CRC32 crc = new CRC32();
+
+        while (data.remaining() >= HEADER_SIZE)
+        {
+            int len = data.getInt();
+            int sum = data.getInt();
+
+            if ((len <= 0) || (len > data.remaining()))
+            {
+                break;
+            }
+
+            crc.reset();
+            crc.update(data.array(), data.position(), len);
+            if ((int) crc.getValue() != sum)
+            {
+                break;
+            }
+
+            ByteBuffer record = (ByteBuffer) data.slice().limit(len);
+
+            data.position(data.position() + len);
+            apply(ini, record);
+            valid = data.position();
+            count++;
+        }
+
+        if (valid < size)
+        {
+            _channel.truncate(valid);
+        }
+
+        return count;
+    }
+
+    void reset() throws IOException
+    {
+        _channel.truncate(0);
+        _channel.force(false);
+    }
+
+    long size() throws IOException
+    {
+        return _channel.size();
+    }
+
+    private void apply(Ini ini, ByteBuffer record)
+    {
+        byte op = record.get();
+        String name = readString(record);
+        String key = ((op == PUT) || (op == REMOVE) || (op == ADD)) ? readString(record) : null;
+        String value = ((op == PUT) || (op == ADD)) ? readString(record) : null;
+
+        apply(ini, op, name, key, value);
+    }
+
+    private String readString(ByteBuffer record)
+    {
+        int len = record.getInt();
+        String ret = null;
+
+        if (len >= 0)
+        {
+            ret = new String(record.array(), record.arrayOffset() + record.position(), len, UTF8);
+            record.position(record.position() + len);
+        }
+
+        return ret;
+    }
+
+    private void writeString(String value) throws IOException
+    {
+        if (value == null)
+        {
+            _output.writeInt(-1);
+        }
+        else
+        {
+            byte[] bytes = value.getBytes(UTF8);
+
+            _output.writeInt(bytes.length);
+            _output.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls back when a file may have been changed. Uses a WatchService on the
+ * parent directory, or polls at a fixed interval where no WatchService is
+ * available. The callback is expected to compare the file with what it saw
+ * last time, events are only hints.
+ */
+final class PreferencesWatcher implements Runnable
+{
+    private final Runnable _callback;
+    private volatile boolean _closed;
+    private final Path _file;
+    private final long _interval;
+    private ScheduledFuture<?> _poll;
+    private WatchService _service;
+
+    PreferencesWatcher(File file, long interval, Runnable callback)
+    {
+        _file = file.toPath().toAbsolutePath();
+        _interval = interval;
+        _callback = callback;
+    }
+
+    @Override public void run()
+    {
+        try
+        {
+            while (!_closed)
+            {
+                WatchKey key = _service.take();
+                boolean hit = false;
+
+                for (WatchEvent<?> event : key.pollEvents())
+                {
+                    hit |= (event.kind() == StandardWatchEventKinds.OVERFLOW) || _file.getFileName().equals(event.context());
+                }
+
+                key.reset();
+                if (hit && !_closed)
+                {
+                    _callback.run();
+                }
+            }
+        }
+        catch (InterruptedException x)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ClosedWatchServiceException x)
+        {
+            assert true;
+        }
+    }
+
+    void close()
+    {
+        _closed = true;
+        if (_poll != null)
+        {
+            _poll.cancel(false);
+        }
+
+        if (_service != null)
+        {
+            try
+            {
+                _service.close();
+            }
+            catch (IOException x)
+            {
+                assert true;
+            }
+        }
+    }
+
+    void start(ScheduledExecutorService poller)
+    {
+        try
+        {
+            _service = FileSystems.getDefault().newWatchService();
+            _file.getParent().register(_service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            Thread thread = new Thread(this, "ini4j-prefs-watcher");
+
+            thread.setDaemon(true);
+            thread.start();
+        }
+        catch (IOException x)
+        {
+            poll(poller);
+        }
+        catch (UnsupportedOperationException x)
+        {
+            poll(poller);
+        }
+    }
+
+    private void poll(ScheduledExecutorService poller)
+    {
+        if (_service != null)
+        {
+            try
+            {
+                _service.close();
+            }
+            catch (IOException x)
+            {
+                assert true;
+            }
+
+            _service = null;
+        }
+
+        _poll = poller.scheduleWithFixedDelay(_callback, _interval, _interval, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes preference nodes backed by an Ini in the XML format of
+ * Preferences.exportNode and exportSubtree, without building a DOM.
+ *
+ * The children of every node are found in one pass over the section names,
+ * instead of scanning all sections for each node.
+ */
+final class PreferencesXmlWriter
+{
+    private static final String INDENT = "  ";
+    private final Ini _ini;
+    private final Writer _output;
+    private final char _separator;
+
+    PreferencesXmlWriter(OutputStream output, Ini ini)
+    {
+        _output = new BufferedWriter(new OutputStreamWriter(output, Config.DEFAULT_FILE_ENCODING));
+        _ini = ini;
+        _separator = ini.getPathSeparator();
+    }
+
+    void write(boolean user, String path, boolean subtree) throws IOException
+    {
+        _output.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+        _output.write("<!DOCTYPE preferences SYSTEM \"http://java.sun.com/dtd/preferences.dtd\">\n");
+        _output.write("<preferences EXTERNAL_XML_VERSION=\"1.0\">\n");
+        _output.write(INDENT);
+        _output.write(user ? "<root type=\"user\">\n" : "<root type=\"system\">\n");
+        int depth = 2;
+
+        writeMap(null, depth);
+        if (path == null)
+        {
+            if (subtree)
+            {
+                writeChildren(null, index(null), depth);
+            }
+        }
+        else
+        {
+            for (int idx = path.indexOf(_separator); idx >= 0; idx = path.indexOf(_separator, idx + 1))
+            {
+                writeStart(path.substring(0, idx), depth++);
+                writeMap(null, depth);
+            }
+
+            writeStart(path, depth);
+            writeMap(_ini.get(path), depth + 1);
+            if (subtree)
+            {
+                writeChildren(path, index(path), depth + 1);
+            }
+
+            for (; depth > 2; depth--)
+            {
+                writeEnd(depth);
+            }
+
+            writeEnd(depth);
+        }
+
+        _output.write(INDENT);
+        _output.write("</root>\n");
+        _output.write("</preferences>\n");
+        _output.flush();
+    }
+
+    private void escape(String value) throws IOException
+    {
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+
+            switch (c)
+            {
+
+                case '&':
+                    _output.write("&amp;");
+                    break;
+
+                case '<':
+                    _output.write("&lt;");
+                    break;
+
+                case '>':
+                    _output.write("&gt;");
+                    break;
+
+                case '"':
+                    _output.write("&quot;");
+                    break;
+
+                // references keep them from attribute value normalization
+                case '\t':
+                case '\n':
+                case '\r':
+                    _output.write("&#");
+                    _output.write(Integer.toString(c));
+                    _output.write(';');
+                    break;
+
+                default:
+
+                    // other control characters are not allowed in XML 1.0,
+                    // not even as references, so they are dropped
+                    if (c >= ' ')
+                    {
+                        _output.write(c);
+                    }
+
+                    break;
+            }
+        }
+    }
+
+    private Map<String, List<String>> index(String path)
+    {
+        Map<String, List<String>> ret = new HashMap<String, List<String>>();
+        String prefix = (path == null) ? null : (path + _separator);
+
+        for (String name : _ini.keySet())
+        {
+            if ((prefix == null) || name.startsWith(prefix))
+            {
+                int idx = name.lastIndexOf(_separator);
+                String parent = (idx < 0) ? null : name.substring(0, idx);
+                List<String> children = ret.get(parent);
+
+                if (children == null)
+                {
+                    children = new ArrayList<String>();
+                    ret.put(parent, children);
+                }
+
+                children.add(name);
+            }
+        }
+
+        return ret;
+    }
+
+    private void indent(int depth) throws IOException
+    {
+        for (int i = 0; i < depth; i++)
+        {
+            _output.write(INDENT);
+        }
+    }
+
+    private void writeChildren(String parent, Map<String, List<String>> index, int depth) throws IOException
+    {
+        List<String> children = index.get(parent);
+
+        if (children != null)
+        {
+            for (String name : children)
+            {
+                writeStart(name, depth);
+                writeMap(_ini.get(name), depth + 1);
+                writeChildren(name, index, depth + 1);
+                writeEnd(depth);
+            }
+        }
+    }
+
+    private void writeEnd(int depth) throws IOException
+    {
+        indent(depth);
+        _output.write("</node>\n");
+    }
+
+    private void writeMap(Ini.Section section, int depth) throws IOException
+    {
+        indent(depth);
+        if ((section == null) || section.isEmpty())
+        {
+            _output.write("<map/>\n");
+        }
+        else
+        {
+            _output.write("<map>\n");
+            for (String key : section.keySet())
+            {
+                String value = section.fetch(key);
+
+                if (value != null)
+                {
+                    indent(depth + 1);
+                    _output.write("<entry key=\"");
+                    escape(key);
+                    _output.write("\" value=\"");
+                    escape(value);
+                    _output.write("\"/>\n");
+                }
+            }
+
+            indent(depth);
+            _output.write("</map>\n");
+        }
+    }
+
+    private void writeStart(String name, int depth) throws IOException
+    {
+        indent(depth);
+        _output.write("<node name=\"");
+        escape(name.substring(name.lastIndexOf(_separator) + 1));
+        _output.write("\">\n");
+    }
+}
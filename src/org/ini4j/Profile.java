@@ -35,10 +35,26 @@ public interface Profile extends MultiMap<String, Profile.Section>, CommentedMap
 
     <T> T fetch(Object sectionName, Object optionName, Class<T> clazz);
 
+    boolean fetchBoolean(Object sectionName, Object optionName, boolean defaultValue);
+
+    double fetchDouble(Object sectionName, Object optionName, double defaultValue);
+
+    int fetchInt(Object sectionName, Object optionName, int defaultValue);
+
+    long fetchLong(Object sectionName, Object optionName, long defaultValue);
+
     String get(Object sectionName, Object optionName);
 
     <T> T get(Object sectionName, Object optionName, Class<T> clazz);
 
+    boolean getBoolean(Object sectionName, Object optionName, boolean defaultValue);
+
+    double getDouble(Object sectionName, Object optionName, double defaultValue);
+
+    int getInt(Object sectionName, Object optionName, int defaultValue);
+
+    long getLong(Object sectionName, Object optionName, long defaultValue);
+
     String put(String sectionName, String optionName, Object value);
 
     Section remove(Profile.Section section);
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Option map reading and writing a Properties object directly.
+ *
+ * Properties hold a single value per key, so the last value added wins and
+ * only index 0 is valid; a null value is stored as an empty string.
+ *
+ * Keys and values are read as Properties.getProperty and stringPropertyNames
+ * do: defaults are included and entries which are not strings are skipped.
+ * Writes and removals only change the Properties object itself, so removing
+ * a key uncovers its default, if any.
+ */
+class PropertiesOptionMap extends BasicOptionMap
+{
+    private static final long serialVersionUID = -4620943356196081377L;
+    private final Properties _properties;
+
+    PropertiesOptionMap(Properties properties)
+    {
+        _properties = properties;
+    }
+
+    @Override public List<String> getAll(Object key)
+    {
+        String value = get(key);
+
+        return (value == null) ? null : Collections.singletonList(value);
+    }
+
+    @Override public boolean isEmpty()
+    {
+        return keySet().isEmpty();
+    }
+
+    @Override public void add(String key, Object value)
+    {
+        put(key, value);
+    }
+
+    @Override public void add(String key, String value)
+    {
+        put(key, value);
+    }
+
+    @Override public void add(String key, Object value, int index)
+    {
+        add(key, ((value == null) || (value instanceof String)) ? (String) value : String.valueOf(value), index);
+    }
+
+    @Override public void add(String key, String value, int index)
+    {
+        if (index > length(key))
+        {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+
+        if (index == length(key))
+        {
+            put(key, value);
+        }
+    }
+
+    @Override public void clear()
+    {
+        _properties.clear();
+        super.clear();
+    }
+
+    @Override public boolean containsKey(Object key)
+    {
+        return get(key) != null;
+    }
+
+    @Override public boolean containsValue(Object value)
+    {
+        return values().contains(value);
+    }
+
+    @Override public String get(Object key)
+    {
+        return (key instanceof String) ? _properties.getProperty((String) key) : null;
+    }
+
+    @Override public String get(Object key, int index)
+    {
+        String value = get(key);
+
+        if ((value != null) && (index != 0))
+        {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+
+        return value;
+    }
+
+    @Override public Set<String> keySet()
+    {
+        return _properties.stringPropertyNames();
+    }
+
+    @Override public int length(Object key)
+    {
+        return containsKey(key) ? 1 : 0;
+    }
+
+    @Override public String put(String key, Object value)
+    {
+        return put(key, ((value == null) || (value instanceof String)) ? (String) value : String.valueOf(value));
+    }
+
+    @Override public String put(String key, String value)
+    {
+        String ret = get(key);
+
+        _properties.setProperty(key, (value == null) ? "" : value);
+
+        return ret;
+    }
+
+    @Override public String put(String key, Object value, int index)
+    {
+        return put(key, ((value == null) || (value instanceof String)) ? (String) value : String.valueOf(value), index);
+    }
+
+    @Override public String put(String key, String value, int index)
+    {
+        get(key, index);
+        if (!containsKey(key))
+        {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+
+        return put(key, value);
+    }
+
+    @Override public List<String> putAll(String key, List<String> values)
+    {
+        List<String> ret = getAll(key);
+
+        if (values.isEmpty())
+        {
+            _properties.remove(key);
+        }
+        else
+        {
+            put(key, values.get(values.size() - 1));
+        }
+
+        return ret;
+    }
+
+    @Override public void putAll(Map<? extends String, ? extends String> map)
+    {
+        for (Map.Entry<? extends String, ? extends String> entry : map.entrySet())
+        {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override public String remove(Object key)
+    {
+        String ret = get(key);
+
+        _properties.remove(key);
+        removeMeta(key);
+
+        return ret;
+    }
+
+    @Override public String remove(Object key, int index)
+    {
+        get(key, index);
+
+        return remove(key);
+    }
+
+    @Override public int size()
+    {
+        return keySet().size();
+    }
+
+    @Override public String toString()
+    {
+        Map<String, String> all = new HashMap<String, String>();
+
+        for (String key : keySet())
+        {
+            all.put(key, _properties.getProperty(key));
+        }
+
+        return all.toString();
+    }
+
+    @Override public Collection<String> values()
+    {
+        Set<String> keys = keySet();
+        List<String> all = new ArrayList<String>(keys.size());
+
+        for (String key : keys)
+        {
+            all.add(_properties.getProperty(key));
+        }
+
+        return all;
+    }
+}
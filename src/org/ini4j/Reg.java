@@ -15,25 +15,33 @@
  */
 package org.ini4j;
 
+import org.ini4j.spi.AtomicFileOutputStream;
+import org.ini4j.spi.BlockWriter;
 import org.ini4j.spi.IniFormatter;
 import org.ini4j.spi.IniHandler;
+import org.ini4j.spi.IniMetrics;
 import org.ini4j.spi.IniParser;
 import org.ini4j.spi.RegBuilder;
+import org.ini4j.spi.RegHandler;
+import org.ini4j.spi.RegParser;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 
 import java.net.URL;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 public class Reg extends BasicRegistry implements Registry, Persistable, Configurable
 {
     private static final long serialVersionUID = -1485602876922985912L;
@@ -94,11 +102,170 @@ public class Reg extends BasicRegistry implements Registry, Persistable, Configu
         load(input);
     }
 
+    // minimal delta turning before into after: removed keys first, then new
+    // and changed keys with only their new, changed and removed values; a key
+    // whose subkeys survive loses its values only, because removing the key
+    // would remove them as well
+    public static Reg diff(Registry before, Registry after)
+    {
+        Reg delta = new Reg();
+        List<String> emptied = new ArrayList<String>();
+
+        delta.getConfig().setTree(false);
+        for (String name : before.keySet())
+        {
+            if (!after.containsKey(name))
+            {
+                if (!after.subtree(name).isEmpty())
+                {
+                    emptied.add(name);
+                }
+                else if (!isParentRemoved(before, after, name))
+                {
+                    delta.add(Type.REMOVE + name);
+                }
+            }
+        }
+
+        for (String name : emptied)
+        {
+            Key prev = before.get(name);
+
+            if (!prev.isEmpty())
+            {
+                Key key = delta.add(name);
+
+                for (String option : prev.keySet())
+                {
+                    key.put(option, "");
+                    key.putType(option, Type.REG_REMOVE);
+                }
+            }
+        }
+
+        for (String name : after.keySet())
+        {
+            Key next = after.get(name);
+            Key prev = before.get(name);
+            Key key = (prev == null) ? delta.add(name) : null;
+
+            for (String option : next.keySet())
+            {
+                Type type = next.getType(option, Type.REG_SZ);
+
+                if ((prev == null) || (type != prev.getType(option, Type.REG_SZ)) || !next.getAll(option).equals(prev.getAll(option)))
+                {
+                    if (key == null)
+                    {
+                        key = delta.add(name);
+                    }
+
+                    key.putAll(option, next.getAll(option));
+                    if (type != Type.REG_SZ)
+                    {
+                        key.putType(option, type);
+                    }
+                }
+            }
+
+            if (prev != null)
+            {
+                for (String option : prev.keySet())
+                {
+                    if (!next.containsKey(option))
+                    {
+                        if (key == null)
+                        {
+                            key = delta.add(name);
+                        }
+
+                        key.put(option, "");
+                        key.putType(option, Type.REG_REMOVE);
+                    }
+                }
+            }
+        }
+
+        return delta;
+    }
+
     public static boolean isWindows()
     {
         return WINDOWS;
     }
 
+    public void apply(Registry delta)
+    {
+        Set<String> removed = new HashSet<String>();
+
+        for (Section section : delta.values())
+        {
+            Key entry = (Key) section;
+            String name = entry.getName();
+
+            if ((name.length() != 0) && (name.charAt(0) == Type.REMOVE_CHAR))
+            {
+                removed.add(name.substring(1));
+            }
+            else
+            {
+                removeKeys(removed);
+                Key key = get(name);
+
+                if (key == null)
+                {
+                    key = add(name);
+                }
+
+                for (String option : entry.keySet())
+                {
+                    Type type = entry.getType(option, Type.REG_SZ);
+
+                    if (type == Type.REG_REMOVE)
+                    {
+                        key.remove(option);
+                    }
+                    else
+                    {
+                        key.putAll(option, entry.getAll(option));
+                        if (type == Type.REG_SZ)
+                        {
+                            key.removeType(option);
+                        }
+                        else
+                        {
+                            key.putType(option, type);
+                        }
+                    }
+                }
+            }
+        }
+
+        removeKeys(removed);
+    }
+
+    public void export(String path, OutputStream output) throws IOException
+    {
+        export(path, new BlockWriter(output, getConfig().getFileEncoding()));
+    }
+
+    // writes the key and its subkeys only, in path order
+    public void export(String path, Writer output) throws IOException
+    {
+        output.write(getVersion());
+        output.write(getConfig().getLineSeparator());
+        output.write(getConfig().getLineSeparator());
+        IniHandler formatter = IniFormatter.newInstance(output, getConfig());
+
+        formatter.startIni();
+        for (Key key : subtree(path))
+        {
+            store(formatter, key);
+        }
+
+        formatter.endIni();
+    }
+
     @Override public Config getConfig()
     {
         return _config;
@@ -131,46 +298,35 @@ public class Reg extends BasicRegistry implements Registry, Persistable, Configu
 
     @Override public void load(InputStream input) throws IOException, InvalidFileFormatException
     {
-        load(new InputStreamReader(input, getConfig().getFileEncoding()));
+        IniHandler builder = newBuilder();
+
+        if (builder instanceof RegHandler)
+        {
+            newParser().parse(input, (RegHandler) builder);
+        }
+        else
+        {
+            load(new InputStreamReader(input, getConfig().getFileEncoding()), builder);
+        }
     }
 
     @Override public void load(URL input) throws IOException, InvalidFileFormatException
     {
-        load(new InputStreamReader(input.openStream(), getConfig().getFileEncoding()));
+        load(input.openStream());
     }
 
     @Override public void load(Reader input) throws IOException, InvalidFileFormatException
     {
-        int newline = 2;
-        StringBuilder buff = new StringBuilder();
+        IniHandler builder = newBuilder();
 
-        for (int c = input.read(); c != -1; c = input.read())
+        if (builder instanceof RegHandler)
         {
-            if (c == LF)
-            {
-                newline--;
-                if (newline == 0)
-                {
-                    break;
-                }
-            }
-            else if ((c != CR) && (newline != 1))
-            {
-                buff.append((char) c);
-            }
+            newParser().parse(input, (RegHandler) builder);
         }
-
-        if (buff.length() == 0)
+        else
         {
-            throw new InvalidFileFormatException("Missing version header");
+            load(input, builder);
         }
-
-        if (!buff.toString().equals(getVersion()))
-        {
-            throw new InvalidFileFormatException("Unsupported version: " + buff.toString());
-        }
-
-        IniParser.newInstance(getConfig()).parse(input, newBuilder());
     }
 
     @Override public void load(File input) throws IOException, InvalidFileFormatException
@@ -205,7 +361,7 @@ public class Reg extends BasicRegistry implements Registry, Persistable, Configu
 
     @Override public void store(OutputStream output) throws IOException
     {
-        store(new OutputStreamWriter(output, getConfig().getFileEncoding()));
+        store(new BlockWriter(output, getConfig().getFileEncoding()));
     }
 
     @Override public void store(Writer output) throws IOException
@@ -218,10 +374,7 @@ public class Reg extends BasicRegistry implements Registry, Persistable, Configu
 
     @Override public void store(File output) throws IOException
     {
-        OutputStream stream = new FileOutputStream(output);
-
-        store(stream);
-        stream.close();
+        AtomicFileOutputStream.store(this, output, getConfig());
     }
 
     public void write() throws IOException
@@ -254,6 +407,11 @@ public class Reg extends BasicRegistry implements Registry, Persistable, Configu
         return getConfig().getPathSeparator();
     }
 
+    @Override IniMetrics getMetrics()
+    {
+        return getConfig().getMetrics();
+    }
+
     @Override boolean isPropertyFirstUpper()
     {
         return getConfig().isPropertyFirstUpper();
@@ -283,6 +441,20 @@ public class Reg extends BasicRegistry implements Registry, Persistable, Configu
         }
     }
 
+    private static boolean isParentRemoved(Registry before, Registry after, String name)
+    {
+        boolean ret = false;
+
+        for (int idx = name.lastIndexOf(KEY_SEPARATOR); !ret && (idx > 0); idx = name.lastIndexOf(KEY_SEPARATOR, idx - 1))
+        {
+            String parent = name.substring(0, idx);
+
+            ret = before.containsKey(parent) && !after.containsKey(parent) && after.subtree(parent).isEmpty();
+        }
+
+        return ret;
+    }
+
     private File createTempFile() throws IOException
     {
         File ret = File.createTempFile(TMP_PREFIX, DEFAULT_SUFFIX);
@@ -292,6 +464,49 @@ public class Reg extends BasicRegistry implements Registry, Persistable, Configu
         return ret;
     }
 
+    private void load(Reader input, IniHandler builder) throws IOException, InvalidFileFormatException
+    {
+        int newline = 2;
+        StringBuilder buff = new StringBuilder();
+
+        for (int c = input.read(); c != -1; c = input.read())
+        {
+            if (c == LF)
+            {
+                newline--;
+                if (newline == 0)
+                {
+                    break;
+                }
+            }
+            else if ((c != CR) && (newline != 1))
+            {
+                buff.append((char) c);
+            }
+        }
+
+        if (buff.length() == 0)
+        {
+            throw new InvalidFileFormatException("Missing version header");
+        }
+
+        if (!buff.toString().equals(getVersion()))
+        {
+            throw new InvalidFileFormatException("Unsupported version: " + buff.toString());
+        }
+
+        IniParser.newInstance(getConfig()).parse(input, builder);
+    }
+
+    private RegParser newParser()
+    {
+        RegParser parser = RegParser.newInstance(getConfig());
+
+        parser.setVersion(getVersion());
+
+        return parser;
+    }
+
     private void regExport(String registryKey, File file) throws IOException
     {
         requireWindows();
@@ -304,6 +519,37 @@ public class Reg extends BasicRegistry implements Registry, Persistable, Configu
         exec(new String[] { "cmd", "/c", "reg", "import", file.getAbsolutePath() });
     }
 
+    // removes the named keys with all their subkeys in one pass
+    private void removeKeys(Set<String> names)
+    {
+        if (!names.isEmpty())
+        {
+            List<String> keys = new ArrayList<String>();
+
+            for (String name : keySet())
+            {
+                boolean found = names.contains(name);
+
+                for (int idx = name.lastIndexOf(getPathSeparator()); !found && (idx > 0); idx = name.lastIndexOf(getPathSeparator(), idx - 1))
+                {
+                    found = names.contains(name.substring(0, idx));
+                }
+
+                if (found)
+                {
+                    keys.add(name);
+                }
+            }
+
+            for (String name : keys)
+            {
+                remove(name);
+            }
+
+            names.clear();
+        }
+    }
+
     private void requireWindows()
     {
         if (!WINDOWS)
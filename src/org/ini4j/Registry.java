@@ -18,6 +18,7 @@ package org.ini4j;
 import java.nio.charset.Charset;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public interface Registry extends Profile
@@ -31,7 +32,6 @@ public interface Registry extends Profile
         HKEY_USERS;
     }
 
-    // TODO handle delete operations with special Type
     enum Type
     {
         REG_NONE("hex(0)"),
@@ -45,7 +45,8 @@ public interface Registry extends Profile
         REG_RESOURCE_LIST("hex(8)"),
         REG_FULL_RESOURCE_DESCRIPTOR("hex(9)"),
         REG_RESOURCE_REQUIREMENTS_LIST("hex(a)"),
-        REG_QWORD("hex(b)");
+        REG_QWORD("hex(b)"),
+        REG_REMOVE("-");
         private static final Map<String, Type> MAPPING;
 
         static
@@ -102,14 +103,24 @@ public interface Registry extends Profile
 
     @Override Key remove(Object key, int index);
 
+    List<Key> subtree(String path);
+
     interface Key extends Section
     {
         String DEFAULT_NAME = "@";
 
+        byte[] getBinary(Object key);
+
         @Override Key getChild(String key);
 
+        int getDword(Object key);
+
+        String[] getMultiString(Object key);
+
         @Override Key getParent();
 
+        long getQword(Object key);
+
         Type getType(Object key);
 
         Type getType(Object key, Type defaulType);
@@ -118,8 +129,12 @@ public interface Registry extends Profile
 
         @Override Key lookup(String... path);
 
+        void putBinary(String key, Type type, byte[] value);
+
         Type putType(String key, Type type);
 
         Type removeType(Object key);
+
+        List<Key> subtree();
     }
 }
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j;
+
+import org.ini4j.spi.AtomicFileOutputStream;
+import org.ini4j.spi.BlockWriter;
+import org.ini4j.spi.IniFormatter;
+import org.ini4j.spi.SectionSpans;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Remembers where the sections of an Ini live in its file and which of them
+ * changed since, so store can copy the untouched byte ranges and format only
+ * the modified sections.
+ */
+final class SectionTracker
+{
+    private static final int TAIL_SIZE = 16;
+    private final Set<Profile.Section> _dirty = Collections.newSetFromMap(new IdentityHashMap<Profile.Section, Boolean>());
+    private final Object _fileKey;
+    private boolean _headerDirty;
+    private final long _modified;
+    private final Path _path;
+    private final long _size;
+    private final SectionSpans _spans;
+
+    private SectionTracker(Path path, BasicFileAttributes attrs, SectionSpans spans)
+    {
+        _path = path;
+        _fileKey = attrs.fileKey();
+        _modified = attrs.lastModifiedTime().toMillis();
+        _size = attrs.size();
+        _spans = spans;
+    }
+
+    static SectionTracker newInstance(File file, SectionSpans spans) throws IOException
+    {
+        SectionTracker ret = null;
+
+        if ((spans != null) && spans.isValid())
+        {
+            Path path = file.toPath().toRealPath();
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+
+            if (attrs.size() == spans.getEnd())
+            {
+                ret = new SectionTracker(path, attrs, spans);
+            }
+        }
+
+        return ret;
+    }
+
+    static SectionTracker store(Ini ini, File file) throws IOException
+    {
+        Config config = ini.getConfig();
+        OutputStream stream = config.isAtomicStore() ? new AtomicFileOutputStream(file, config.isForceStore()) : new FileOutputStream(file);
+        SectionSpans spans = new SectionSpans();
+
+        try
+        {
+            BlockWriter writer = new BlockWriter(stream, config.getFileEncoding());
+            IniFormatter formatter = IniFormatter.newInstance(writer, config);
+
+            formatter.startIni();
+            ini.store(formatter, ini.getComment());
+            for (Profile.Section section : ini.values())
+            {
+                spans.start(section, writer.position());
+                ini.store(formatter, section);
+            }
+
+            spans.end(writer.position());
+            formatter.endIni();
+            if (writer.getException() != null)
+            {
+                throw writer.getException();
+            }
+
+            if (stream instanceof AtomicFileOutputStream)
+            {
+                ((AtomicFileOutputStream) stream).commit();
+            }
+        }
+        finally
+        {
+            stream.close();
+        }
+
+        return newInstance(file, spans);
+    }
+
+    boolean isCurrent(File file)
+    {
+        boolean ret = false;
+
+        try
+        {
+            Path path = file.toPath().toRealPath();
+
+            if (path.equals(_path))
+            {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+
+                ret = (attrs.size() == _size) && (attrs.lastModifiedTime().toMillis() == _modified) && ((_fileKey == null) || _fileKey.equals(attrs.fileKey()));
+            }
+        }
+        catch (IOException x)
+        {
+            assert true;
+        }
+
+        return ret;
+    }
+
+    void markDirty(Profile.Section section)
+    {
+        _dirty.add(section);
+    }
+
+    void markHeaderDirty()
+    {
+        _headerDirty = true;
+    }
+
+    SectionTracker store(Ini ini) throws IOException
+    {
+        Config config = ini.getConfig();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        BlockWriter writer = new BlockWriter(buffer, config.getFileEncoding());
+        IniFormatter formatter = IniFormatter.newInstance(writer, config);
+        List<Profile.Section> sections = new ArrayList<Profile.Section>(ini.values());
+        List<Piece> pieces = new ArrayList<Piece>();
+        SectionSpans spans = new SectionSpans();
+        boolean header = _headerDirty || (!sections.isEmpty() && !isCopied(sections.get(0), _spans.getPrefixEnd(), false) && !isPrefixClosed(config));
+        boolean clean = !header;
+        boolean inPlace = true;
+        long offset = _spans.getPrefixEnd();
+        Piece piece;
+
+        // a copied header without trailing blank line would run into the comment of the first section
+        if (header)
+        {
+            ini.store(formatter, ini.getComment());
+            piece = new Piece(0, _spans.getPrefixEnd(), take(writer, buffer));
+            inPlace &= piece.fits();
+        }
+        else
+        {
+            formatter.handleComment(null);
+            piece = new Piece(0, _spans.getPrefixEnd(), null);
+        }
+
+        pieces.add(piece);
+        long position = piece.length();
+
+        for (int i = 0; i < sections.size(); i++)
+        {
+            Profile.Section section = sections.get(i);
+            long[] span = _spans.get(section);
+
+            // the last section of the file is not guaranteed to end with a blank line
+            if (isCopied(section, -1, i < (sections.size() - 1)))
+            {
+                piece = new Piece(span[0], span[1], null);
+            }
+            else
+            {
+                clean = false;
+                ini.store(formatter, section);
+                piece = (span == null) ? new Piece(-1, -1, take(writer, buffer)) : new Piece(span[0], span[1], take(writer, buffer));
+            }
+
+            inPlace &= (piece._start == offset) && piece.fits();
+            offset = piece._end;
+            spans.start(section, position);
+            position += piece.length();
+            pieces.add(piece);
+        }
+
+        spans.end(position);
+        inPlace &= offset == _spans.getEnd();
+        SectionTracker ret = this;
+
+        if (inPlace && clean)
+        {
+            _dirty.clear();
+        }
+        else
+        {
+            if (inPlace && !config.isAtomicStore())
+            {
+                writeInPlace(pieces, config.isForceStore());
+            }
+            else
+            {
+                writeSpliced(pieces, config.isForceStore());
+            }
+
+            ret = newInstance(_path.toFile(), spans);
+        }
+
+        return ret;
+    }
+
+    private boolean isCopied(Profile.Section section, long start, boolean followed)
+    {
+        long[] span = _spans.get(section);
+
+        return (span != null) && !_dirty.contains(section) && ((start < 0) || (span[0] == start)) && !(followed && (span[1] == _spans.getEnd()));
+    }
+
+    private boolean isPrefixClosed(Config config) throws IOException
+    {
+        long end = _spans.getPrefixEnd();
+        int len = (int) Math.min(end, TAIL_SIZE);
+        ByteBuffer bytes = ByteBuffer.allocate(len);
+        FileChannel channel = FileChannel.open(_path, StandardOpenOption.READ);
+
+        try
+        {
+            while (bytes.hasRemaining() && (channel.read(bytes, (end - len) + bytes.position()) > 0))
+            {
+                assert true;
+            }
+        }
+        finally
+        {
+            channel.close();
+        }
+
+        bytes.flip();
+        String tail = config.getFileEncoding().decode(bytes).toString();
+        int idx = tail.length();
+
+        if ((idx > 0) && (tail.charAt(idx - 1) == '\n'))
+        {
+            idx--;
+        }
+
+        if ((idx > 0) && (tail.charAt(idx - 1) == '\r'))
+        {
+            idx--;
+        }
+
+        return (idx == tail.length()) || (idx == 0) || (tail.charAt(idx - 1) == '\n') || (tail.charAt(idx - 1) == '\r');
+    }
+
+    private static byte[] take(BlockWriter writer, ByteArrayOutputStream buffer) throws IOException
+    {
+        writer.flush();
+        if (writer.getException() != null)
+        {
+            throw writer.getException();
+        }
+
+        byte[] ret = buffer.toByteArray();
+
+        buffer.reset();
+
+        return ret;
+    }
+
+    private void transfer(FileChannel source, long start, long end, FileChannel target) throws IOException
+    {
+        for (long pos = start; pos < end;)
+        {
+            long n = source.transferTo(pos, end - pos, target);
+
+            if (n <= 0)
+            {
+                throw new IOException("File truncated during store: " + _path);
+            }
+
+            pos += n;
+        }
+    }
+
+    private void writeInPlace(List<Piece> pieces, boolean force) throws IOException
+    {
+        FileChannel channel = FileChannel.open(_path, StandardOpenOption.WRITE);
+
+        try
+        {
+            for (Piece piece : pieces)
+            {
+                if (piece._bytes != null)
+                {
+                    ByteBuffer bytes = ByteBuffer.wrap(piece._bytes);
+
+                    for (long pos = piece._start; bytes.hasRemaining();)
+                    {
+                        pos += channel.write(bytes, pos);
+                    }
+                }
+            }
+
+            if (force)
+            {
+                channel.force(true);
+            }
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    private void writeSpliced(List<Piece> pieces, boolean force) throws IOException
+    {
+        AtomicFileOutputStream stream = new AtomicFileOutputStream(_path.toFile(), force);
+
+        try
+        {
+            FileChannel source = FileChannel.open(_path, StandardOpenOption.READ);
+
+            try
+            {
+                FileChannel target = stream.getChannel();
+                long start = 0;
+                long end = 0;
+
+                // adjacent ranges are copied with a single transfer
+                for (Piece piece : pieces)
+                {
+                    if ((piece._bytes == null) && (piece._start == end))
+                    {
+                        end = piece._end;
+                    }
+                    else
+                    {
+                        transfer(source, start, end, target);
+                        if (piece._bytes == null)
+                        {
+                            start = piece._start;
+                            end = piece._end;
+                        }
+                        else
+                        {
+                            stream.write(piece._bytes);
+                            start = end = 0;
+                        }
+                    }
+                }
+
+                transfer(source, start, end, target);
+            }
+            finally
+            {
+                source.close();
+            }
+
+            stream.commit();
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    private static final class Piece
+    {
+        private final byte[] _bytes;
+        private final long _end;
+        private final long _start;
+
+        private Piece(long start, long end, byte[] bytes)
+        {
+            _start = start;
+            _end = end;
+            _bytes = bytes;
+        }
+
+        private boolean fits()
+        {
+            return (_start >= 0) && ((_bytes == null) || (_bytes.length == (_end - _start)));
+        }
+
+        private long length()
+        {
+            return (_bytes == null) ? (_end - _start) : _bytes.length;
+        }
+    }
+}
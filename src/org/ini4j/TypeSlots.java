@@ -0,0 +1,222 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import java.util.Arrays;
+
+// open addressing table from option name to registry type ordinal, one
+// byte per slot instead of a meta map entry with a composed String key; the
+// serialized form holds type names, so reordering the types keeps it valid
+final class TypeSlots implements Serializable
+{
+    private static final long serialVersionUID = 4416003925385125302L;
+    private static final Registry.Type[] TYPES = Registry.Type.values();
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int HASH_SHIFT = 16;
+    private transient String[] _keys = new String[INITIAL_CAPACITY];
+    private transient int _size;
+    private transient byte[] _types = new byte[INITIAL_CAPACITY];
+
+    void clear()
+    {
+        Arrays.fill(_keys, null);
+        Arrays.fill(_types, (byte) 0);
+        _size = 0;
+    }
+
+    Registry.Type get(Object key)
+    {
+        int idx = indexOf(key);
+
+        return (idx < 0) ? null : TYPES[_types[idx] - 1];
+    }
+
+    Registry.Type put(String key, Registry.Type type)
+    {
+        Registry.Type ret;
+
+        if (type == null)
+        {
+            ret = remove(key);
+        }
+        else
+        {
+            int idx = indexOf(key);
+
+            if (idx < 0)
+            {
+                ret = null;
+                if (((_size + 1) * 4) > (_keys.length * 3))
+                {
+                    resize(_keys.length * 2);
+                }
+
+                idx = slot(key);
+                while (_keys[idx] != null)
+                {
+                    idx = (idx + 1) & (_keys.length - 1);
+                }
+
+                _keys[idx] = key;
+                _size++;
+            }
+            else
+            {
+                ret = TYPES[_types[idx] - 1];
+            }
+
+            _types[idx] = (byte) (type.ordinal() + 1);
+        }
+
+        return ret;
+    }
+
+    void putAll(TypeSlots other)
+    {
+        for (int i = 0; i < other._keys.length; i++)
+        {
+            if (other._keys[i] != null)
+            {
+                put(other._keys[i], TYPES[other._types[i] - 1]);
+            }
+        }
+    }
+
+    // backward shift deletion keeps probe sequences intact without tombstones
+    Registry.Type remove(Object key)
+    {
+        int idx = indexOf(key);
+        Registry.Type ret = null;
+
+        if (idx >= 0)
+        {
+            int mask = _keys.length - 1;
+
+            ret = TYPES[_types[idx] - 1];
+            _size--;
+            for (int next = (idx + 1) & mask; _keys[next] != null; next = (next + 1) & mask)
+            {
+                int home = slot(_keys[next]);
+
+                if (((next - home) & mask) >= ((next - idx) & mask))
+                {
+                    _keys[idx] = _keys[next];
+                    _types[idx] = _types[next];
+                    idx = next;
+                }
+            }
+
+            _keys[idx] = null;
+            _types[idx] = 0;
+        }
+
+        return ret;
+    }
+
+    private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException
+    {
+        input.defaultReadObject();
+        int size = input.readInt();
+
+        _keys = new String[INITIAL_CAPACITY];
+        _types = new byte[INITIAL_CAPACITY];
+        for (int i = 0; i < size; i++)
+        {
+            String key = (String) input.readObject();
+            String name = (String) input.readObject();
+
+            try
+            {
+                put(key, Registry.Type.valueOf(name));
+            }
+            catch (IllegalArgumentException x)
+            {
+                throw (InvalidObjectException) new InvalidObjectException("Unknown registry type: " + name).initCause(x);
+            }
+        }
+    }
+
+    private void writeObject(ObjectOutputStream output) throws IOException
+    {
+        output.defaultWriteObject();
+        output.writeInt(_size);
+        for (int i = 0; i < _keys.length; i++)
+        {
+            if (_keys[i] != null)
+            {
+                output.writeObject(_keys[i]);
+                output.writeObject(TYPES[_types[i] - 1].name());
+            }
+        }
+    }
+
+    private int indexOf(Object key)
+    {
+        int idx = -1;
+
+        if (key instanceof String)
+        {
+            int mask = _keys.length - 1;
+
+            for (int i = slot(key); (idx < 0) && (_keys[i] != null); i = (i + 1) & mask)
+            {
+                if (_keys[i].equals(key))
+                {
+                    idx = i;
+                }
+            }
+        }
+
+        return idx;
+    }
+
+    private void resize(int capacity)
+    {
+        String[] keys = _keys;
+        byte[] types = _types;
+
+        _keys = new String[capacity];
+        _types = new byte[capacity];
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (keys[i] != null)
+            {
+                int idx = slot(keys[i]);
+
+                while (_keys[idx] != null)
+                {
+                    idx = (idx + 1) & (capacity - 1);
+                }
+
+                _keys[idx] = keys[i];
+                _types[idx] = types[i];
+            }
+        }
+    }
+
+    private int slot(Object key)
+    {
+        int h = key.hashCode();
+
+        return (h ^ (h >>> HASH_SHIFT)) & (_keys.length - 1);
+    }
+}
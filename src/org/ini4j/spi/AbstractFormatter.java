@@ -16,6 +16,7 @@
 package org.ini4j.spi;
 
 import org.ini4j.Config;
+import org.ini4j.ConfigSnapshot;
 
 import java.io.PrintWriter;
 
@@ -25,23 +26,19 @@ abstract class AbstractFormatter implements HandlerBase
     private static final char COMMENT = '#';
     private static final char SPACE = ' ';
     private Config _config = Config.getGlobal();
+    private long _formatStart;
     private boolean _header = true;
     private PrintWriter _output;
+    private ConfigSnapshot _snapshot = _config.getSnapshot();
 
     @Override public void handleComment(String comment)
     {
-        if (getConfig().isComment() && (!_header || getConfig().isHeaderComment()) && (comment != null) && (comment.length() != 0))
+        if (getSnapshot().is(ConfigSnapshot.COMMENT) && (!_header || getSnapshot().is(ConfigSnapshot.HEADER_COMMENT)) && (comment != null) && (comment.length() != 0))
         {
-            for (String line : comment.split(getConfig().getLineSeparator()))
-            {
-                getOutput().print(COMMENT);
-                getOutput().print(line);
-                getOutput().print(getConfig().getLineSeparator());
-            }
-
+            printComment(comment);
             if (_header)
             {
-                getOutput().print(getConfig().getLineSeparator());
+                getOutput().print(getSnapshot().getLineSeparator());
             }
         }
 
@@ -50,36 +47,36 @@ abstract class AbstractFormatter implements HandlerBase
 
     @Override public void handleOption(String optionName, String optionValue)
     {
-        if (getConfig().isStrictOperator())
+        if (getSnapshot().is(ConfigSnapshot.STRICT_OPERATOR))
         {
-            if (getConfig().isEmptyOption() || (optionValue != null))
+            if (getSnapshot().is(ConfigSnapshot.EMPTY_OPTION) || (optionValue != null))
             {
-                getOutput().print(escapeKey(optionName));
+                printKey(optionName);
                 getOutput().print(OPERATOR);
             }
 
             if (optionValue != null)
             {
-                getOutput().print(escapeValue(optionValue));
+                printValue(optionValue);
             }
 
-            if (getConfig().isEmptyOption() || (optionValue != null))
+            if (getSnapshot().is(ConfigSnapshot.EMPTY_OPTION) || (optionValue != null))
             {
-                getOutput().print(getConfig().getLineSeparator());
+                getOutput().print(getSnapshot().getLineSeparator());
             }
         }
         else
         {
-            String value = ((optionValue == null) && getConfig().isEmptyOption()) ? "" : optionValue;
+            String value = ((optionValue == null) && getSnapshot().is(ConfigSnapshot.EMPTY_OPTION)) ? "" : optionValue;
 
             if (value != null)
             {
-                getOutput().print(escapeKey(optionName));
+                printKey(optionName);
                 getOutput().print(SPACE);
                 getOutput().print(OPERATOR);
                 getOutput().print(SPACE);
-                getOutput().print(escapeValue(value));
-                getOutput().print(getConfig().getLineSeparator());
+                printValue(value);
+                getOutput().print(getSnapshot().getLineSeparator());
             }
         }
 
@@ -94,6 +91,7 @@ abstract class AbstractFormatter implements HandlerBase
     protected void setConfig(Config value)
     {
         _config = value;
+        _snapshot = value.getSnapshot();
     }
 
     protected PrintWriter getOutput()
@@ -106,18 +104,81 @@ abstract class AbstractFormatter implements HandlerBase
         _output = value;
     }
 
+    ConfigSnapshot getSnapshot()
+    {
+        return _snapshot;
+    }
+
+    void endFormat()
+    {
+        if (_formatStart != 0)
+        {
+            _snapshot.getMetrics().phase(IniMetrics.Phase.FORMAT, System.nanoTime() - _formatStart);
+            _formatStart = 0;
+        }
+    }
+
     void setHeader(boolean value)
     {
         _header = value;
     }
 
-    String escapeKey(String input)
+    void startFormat()
     {
-        return getConfig().isEscape() ? EscapeTool.getInstance().escape(input) : input;
+        _formatStart = (_snapshot.getMetrics() == IniMetrics.NONE) ? 0 : System.nanoTime();
     }
 
-    String escapeValue(String input)
+    void printKey(String input)
     {
-        return getConfig().isEscape() &&  ! getConfig().isEscapeKeyOnly() ? EscapeTool.getInstance().escape(input) : input;
+        print(input, getSnapshot().is(ConfigSnapshot.ESCAPE));
+    }
+
+    void printValue(String input)
+    {
+        print(input, getSnapshot().is(ConfigSnapshot.ESCAPE) && !getSnapshot().is(ConfigSnapshot.ESCAPE_KEY_ONLY));
+    }
+
+    private void print(String input, boolean escape)
+    {
+        if (!escape)
+        {
+            getOutput().print(input);
+        }
+        else if (getOutput() instanceof BlockWriter)
+        {
+            ((BlockWriter) getOutput()).printEscaped(input, EscapeTool.getInstance());
+        }
+        else
+        {
+            getOutput().print(EscapeTool.getInstance().escape(input));
+        }
+    }
+
+    // same lines as comment.split(separator), without the regular expression
+    private void printComment(String comment)
+    {
+        String separator = getSnapshot().getLineSeparator();
+        int sepLen = separator.length();
+        int end = comment.length();
+
+        while ((sepLen != 0) && (end != 0) && comment.startsWith(separator, end - sepLen))
+        {
+            end -= sepLen;
+        }
+
+        for (int start = 0; start < end;)
+        {
+            int idx = (sepLen == 0) ? -1 : comment.indexOf(separator, start);
+
+            if ((idx < 0) || (idx > end))
+            {
+                idx = end;
+            }
+
+            getOutput().print(COMMENT);
+            getOutput().write(comment, start, idx - start);
+            getOutput().print(separator);
+            start = idx + sepLen;
+        }
     }
 }
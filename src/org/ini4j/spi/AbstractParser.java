@@ -16,6 +16,7 @@
 package org.ini4j.spi;
 
 import org.ini4j.Config;
+import org.ini4j.ConfigSnapshot;
 import org.ini4j.InvalidFileFormatException;
 
 import java.io.IOException;
@@ -30,12 +31,20 @@ abstract class AbstractParser
 {
     private final String _comments;
     private Config _config = Config.getGlobal();
-    private final String _operators;
+    private boolean _emptyOption;
+    private boolean _lowerCaseOption;
+    private boolean _lowerCaseSection;
+    private IniMetrics _metrics;
+    private final char[] _operators;
+    private ConfigSnapshot _snapshot;
+    private boolean _unescapeKey;
+    private boolean _unescapeValue;
 
     protected AbstractParser(String operators, String comments)
     {
-        _operators = operators;
+        _operators = operators.toCharArray();
         _comments = comments;
+        setSnapshot(_config.getSnapshot());
     }
 
     protected Config getConfig()
@@ -46,6 +55,7 @@ abstract class AbstractParser
     protected void setConfig(Config value)
     {
         _config = value;
+        setSnapshot(value.getSnapshot());
     }
 
     protected void parseError(String line, int lineNumber) throws InvalidFileFormatException
@@ -53,19 +63,35 @@ abstract class AbstractParser
         throw new InvalidFileFormatException("parse error (at line: " + lineNumber + "): " + line);
     }
 
+    IniMetrics getMetrics()
+    {
+        return _metrics;
+    }
+
+    ConfigSnapshot getSnapshot()
+    {
+        return _snapshot;
+    }
+
     IniSource newIniSource(InputStream input, HandlerBase handler)
     {
-        return new IniSource(input, handler, _comments, getConfig());
+        setSnapshot(getConfig().getSnapshot());
+
+        return new IniSource(input, handler, _comments, _snapshot);
     }
 
     IniSource newIniSource(Reader input, HandlerBase handler)
     {
-        return new IniSource(input, handler, _comments, getConfig());
+        setSnapshot(getConfig().getSnapshot());
+
+        return new IniSource(input, handler, _comments, _snapshot);
     }
 
     IniSource newIniSource(URL input, HandlerBase handler) throws IOException
     {
-        return new IniSource(input, handler, _comments, getConfig());
+        setSnapshot(getConfig().getSnapshot());
+
+        return new IniSource(input, handler, _comments, _snapshot);
     }
 
     void parseOptionLine(String line, HandlerBase handler, int lineNumber) throws InvalidFileFormatException
@@ -76,7 +102,7 @@ abstract class AbstractParser
 
         if (idx < 0)
         {
-            if (getConfig().isEmptyOption())
+            if (_emptyOption)
             {
                 name = line;
             }
@@ -96,7 +122,7 @@ abstract class AbstractParser
             parseError(line, lineNumber);
         }
 
-        if (getConfig().isLowerCaseOption())
+        if (_lowerCaseOption)
         {
             name = name.toLowerCase(Locale.getDefault());
         }
@@ -117,42 +143,79 @@ abstract class AbstractParser
         return ((st > 0) || (len < line.length())) ? line.substring(st, len) : line;
     }
 
+    // reading lines is counted as decode, handler callbacks as build and
+    // the rest of the parse as lex
+    void report(IniSource source, MeteredHandler handler, long start)
+    {
+        long total = System.nanoTime() - start;
+
+        _metrics.phase(IniMetrics.Phase.DECODE, source.getDecodeNanos());
+        _metrics.phase(IniMetrics.Phase.LEX, total - source.getDecodeNanos() - handler.getNanos());
+        _metrics.phase(IniMetrics.Phase.BUILD, handler.getNanos());
+    }
+
+    String toSectionName(String name)
+    {
+        return _lowerCaseSection ? name.toLowerCase(Locale.getDefault()) : name;
+    }
+
     String unescapeKey(String line)
     {
-        return getConfig().isEscape() ? EscapeTool.getInstance().unescape(line) : line;
+        return _unescapeKey ? unescape(line) : line;
     }
 
     String unescapeValue(String line)
     {
-        return (getConfig().isEscape() && !getConfig().isEscapeKeyOnly()) ? EscapeTool.getInstance().unescape(line) : line;
+        return _unescapeValue ? unescape(line) : line;
+    }
+
+    // unescape returns the same instance when there is nothing to decode
+    private String unescape(String line)
+    {
+        String ret = EscapeTool.getInstance().unescape(line);
+
+        if (ret != line)
+        {
+            _metrics.escapeDecoded();
+        }
+
+        return ret;
     }
 
+    // first operator not preceded by a backslash
     private int indexOfOperator(String line)
     {
+        char[] operators = _operators;
+        int len = line.length();
         int idx = -1;
 
-        for (char c : _operators.toCharArray())
+        for (int i = 0; (idx < 0) && (i < len); i++)
         {
-            int index = line.indexOf(c);
+            char c = line.charAt(i);
 
-            while ((index >= 0))
+            for (char op : operators)
             {
-                if ((index >= 0) && ((index == 0) || (line.charAt(index - 1) != '\\')) && ((idx == -1) || (index < idx)))
+                if ((c == op) && ((i == 0) || (line.charAt(i - 1) != '\\')))
                 {
-                    idx = index;
+                    idx = i;
 
                     break;
                 }
-
-                index = (index == (line.length() - 1)) ? -1 : line.indexOf(c, index + 1);
             }
-
-            //if ((index >= 0) && ((index == 0) || (line.charAt(index - 1) != '\\')) && ((idx == -1) || (index < idx)))
-            // {
-            //     idx = index;
-            // }
         }
 
         return idx;
     }
+
+    // flags used per line are resolved once per parse
+    void setSnapshot(ConfigSnapshot value)
+    {
+        _snapshot = value;
+        _emptyOption = value.is(ConfigSnapshot.EMPTY_OPTION);
+        _lowerCaseOption = value.is(ConfigSnapshot.LOWER_CASE_OPTION);
+        _lowerCaseSection = value.is(ConfigSnapshot.LOWER_CASE_SECTION);
+        _metrics = value.getMetrics();
+        _unescapeKey = value.is(ConfigSnapshot.ESCAPE);
+        _unescapeValue = _unescapeKey && !value.is(ConfigSnapshot.ESCAPE_KEY_ONLY);
+    }
 }
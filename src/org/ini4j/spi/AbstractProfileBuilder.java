@@ -20,11 +20,20 @@ import org.ini4j.Config;
 import org.ini4j.Ini;
 import org.ini4j.Profile;
 
-abstract class AbstractProfileBuilder implements IniHandler
+abstract class AbstractProfileBuilder implements IniHandler, PositionHandler
 {
+    private long _commentOffset;
     private Profile.Section _currentSection;
     private boolean _header;
     private String _lastComment;
+    private long _lineOffset;
+    private boolean _positioned;
+    private SectionSpans _spans;
+
+    public SectionSpans getSpans()
+    {
+        return _spans;
+    }
 
     @Override public void endIni()
     {
@@ -52,6 +61,33 @@ abstract class AbstractProfileBuilder implements IniHandler
         _lastComment = comment;
     }
 
+    @Override public void handleEndPosition(long offset, boolean valid)
+    {
+        if (_spans == null)
+        {
+            _spans = new SectionSpans();
+        }
+
+        _spans.end(offset);
+        if (!valid)
+        {
+            _spans.invalidate();
+        }
+    }
+
+    @Override public void handlePosition(long commentOffset, long lineOffset)
+    {
+        _positioned = true;
+        _commentOffset = commentOffset;
+        _lineOffset = lineOffset;
+    }
+
+    // a comment not collected still starts the span of the next section
+    @Override public void handleSkippedComment()
+    {
+        handleComment("");
+    }
+
     @Override public void handleOption(String name, String value)
     {
         _header = false;
@@ -81,6 +117,8 @@ abstract class AbstractProfileBuilder implements IniHandler
 
     @Override public void startSection(String sectionName)
     {
+        long offset = ((_lastComment != null) && !_header) ? _commentOffset : _lineOffset;
+
         if (getConfig().isMultiSection())
         {
             _currentSection = getProfile().add(sectionName);
@@ -107,6 +145,16 @@ abstract class AbstractProfileBuilder implements IniHandler
         }
 
         _header = false;
+        if (_positioned)
+        {
+            _positioned = false;
+            if (_spans == null)
+            {
+                _spans = new SectionSpans();
+            }
+
+            _spans.start(_currentSection, offset);
+        }
     }
 
     abstract Config getConfig();
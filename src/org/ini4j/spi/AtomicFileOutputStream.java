@@ -0,0 +1,228 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j.spi;
+
+import org.ini4j.Config;
+import org.ini4j.Persistable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes into a temporary sibling of the target file and moves it over the
+ * target on commit, so readers see either the old or the new content.
+ *
+ * Closing the stream without commit discards the temporary file. Write errors
+ * are remembered and rethrown by commit, because formatters swallow them.
+ */
+public class AtomicFileOutputStream extends OutputStream
+{
+    private static final String TMP_SUFFIX = ".tmp";
+    private final FileChannel _channel;
+    private boolean _closed;
+    private boolean _committed;
+    private IOException _exception;
+    private final boolean _force;
+    private final Path _target;
+    private final Path _tmp;
+
+    public AtomicFileOutputStream(File target, boolean force) throws IOException
+    {
+        Path path = target.toPath().toAbsolutePath();
+
+        if (Files.isSymbolicLink(path))
+        {
+            path = path.toRealPath();
+        }
+
+        _target = path;
+        _force = force;
+        Path tmp;
+        FileChannel channel = null;
+
+        do
+        {
+            tmp = path.resolveSibling(path.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + TMP_SUFFIX);
+            try
+            {
+                channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            }
+            catch (FileAlreadyExistsException x)
+            {
+                assert true;
+            }
+        }
+        while (channel == null);
+
+        _tmp = tmp;
+        _channel = channel;
+    }
+
+    // stores through a temporary file when the config asks for atomic stores,
+    // otherwise straight into the file
+    public static void store(Persistable source, File file, Config config) throws IOException
+    {
+        OutputStream stream = config.isAtomicStore() ? new AtomicFileOutputStream(file, config.isForceStore()) : new FileOutputStream(file);
+
+        try
+        {
+            source.store(stream);
+            if (stream instanceof AtomicFileOutputStream)
+            {
+                ((AtomicFileOutputStream) stream).commit();
+            }
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    @Override public void close() throws IOException
+    {
+        if (!_closed)
+        {
+            _closed = true;
+            try
+            {
+                _channel.close();
+            }
+            finally
+            {
+                if (!_committed)
+                {
+                    Files.deleteIfExists(_tmp);
+                }
+            }
+        }
+    }
+
+    public FileChannel getChannel()
+    {
+        return _channel;
+    }
+
+    public void commit() throws IOException
+    {
+        if (_exception != null)
+        {
+            throw _exception;
+        }
+
+        if (_force)
+        {
+            _channel.force(true);
+        }
+
+        _channel.close();
+        copyPermissions();
+        try
+        {
+            Files.move(_tmp, _target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException x)
+        {
+            Files.move(_tmp, _target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        _committed = true;
+        if (_force)
+        {
+            forceDirectory();
+        }
+    }
+
+    @Override public void write(int b) throws IOException
+    {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override public void write(byte[] b, int off, int len) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+
+        try
+        {
+            while (buffer.hasRemaining())
+            {
+                _channel.write(buffer);
+            }
+        }
+        catch (IOException x)
+        {
+            if (_exception == null)
+            {
+                _exception = x;
+            }
+
+            throw x;
+        }
+    }
+
+    private void copyPermissions()
+    {
+        try
+        {
+            if (Files.exists(_target, LinkOption.NOFOLLOW_LINKS))
+            {
+                Files.setPosixFilePermissions(_tmp, Files.getPosixFilePermissions(_target));
+            }
+        }
+        catch (UnsupportedOperationException x)
+        {
+            assert true;
+        }
+        catch (IOException x)
+        {
+            assert true;
+        }
+    }
+
+    private void forceDirectory()
+    {
+        try
+        {
+            FileChannel dir = FileChannel.open(_target.getParent(), StandardOpenOption.READ);
+
+            try
+            {
+                dir.force(true);
+            }
+            finally
+            {
+                dir.close();
+            }
+        }
+        catch (IOException x)
+        {
+            assert true;
+        }
+    }
+}
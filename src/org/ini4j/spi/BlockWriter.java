@@ -0,0 +1,341 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j.spi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Unsynchronized PrintWriter which collects characters in a reusable buffer
+ * and encodes them in large blocks into an OutputStream, a channel or a
+ * ByteBuffer.
+ *
+ * Formatters recognize this writer and escape directly into its buffer. The
+ * encoder is configured the same way as OutputStreamWriter's, so the produced
+ * bytes are identical to PrintWriter over OutputStreamWriter.
+ */
+public class BlockWriter extends PrintWriter
+{
+    public static final int DEFAULT_BLOCK_SIZE = 0x10000;
+    private final StringBuilder _buffer;
+    private final int _blockSize;
+    private final ByteBuffer _bytes;
+    private final CharBuffer _chars;
+    private final CharsetEncoder _encoder;
+    private final WritableByteChannel _channel;
+    private boolean _closed;
+    private IOException _exception;
+    private final OutputStream _stream;
+    private long _written;
+    private final ByteBuffer _target;
+
+    public BlockWriter(OutputStream output, Charset charset)
+    {
+        this(output, null, null, charset, DEFAULT_BLOCK_SIZE);
+    }
+
+    public BlockWriter(WritableByteChannel output, Charset charset)
+    {
+        this(null, output, null, charset, DEFAULT_BLOCK_SIZE);
+    }
+
+    public BlockWriter(ByteBuffer output, Charset charset)
+    {
+        this(null, null, output, charset, DEFAULT_BLOCK_SIZE);
+    }
+
+    protected BlockWriter(OutputStream stream, WritableByteChannel channel, ByteBuffer target, Charset charset, int blockSize)
+    {
+        super(NullWriter.INSTANCE);
+        _stream = stream;
+        _channel = channel;
+        _target = target;
+        _blockSize = blockSize;
+        _buffer = new StringBuilder(blockSize + (blockSize >> 2));
+        _chars = CharBuffer.allocate(blockSize + 1);
+        _encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _bytes = ByteBuffer.allocate((int) Math.ceil(_encoder.maxBytesPerChar() * blockSize));
+    }
+
+    public IOException getException()
+    {
+        return _exception;
+    }
+
+    @Override public boolean checkError()
+    {
+        flush();
+
+        return _exception != null;
+    }
+
+    @Override public void close()
+    {
+        if (!_closed)
+        {
+            drain(true);
+            try
+            {
+                if (_stream != null)
+                {
+                    _stream.close();
+                }
+                else if (_channel != null)
+                {
+                    _channel.close();
+                }
+            }
+            catch (IOException x)
+            {
+                error(x);
+            }
+
+            _closed = true;
+        }
+    }
+
+    @Override public void flush()
+    {
+        if (!_closed)
+        {
+            drain(false);
+            if (_stream != null)
+            {
+                try
+                {
+                    _stream.flush();
+                }
+                catch (IOException x)
+                {
+                    error(x);
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of bytes produced so far, including characters still buffered.
+     */
+    public long position()
+    {
+        encodeBuffered(false);
+
+        return _written + _bytes.position();
+    }
+
+    @Override public void print(char c)
+    {
+        _buffer.append(c);
+        drainIfFull();
+    }
+
+    @Override public void print(String s)
+    {
+        _buffer.append(s);
+        drainIfFull();
+    }
+
+    @Override public void println()
+    {
+        print(System.getProperty("line.separator"));
+    }
+
+    @Override public void write(int c)
+    {
+        print((char) c);
+    }
+
+    @Override public void write(char[] buf)
+    {
+        write(buf, 0, buf.length);
+    }
+
+    @Override public void write(char[] buf, int off, int len)
+    {
+        _buffer.append(buf, off, len);
+        drainIfFull();
+    }
+
+    @Override public void write(String s)
+    {
+        print(s);
+    }
+
+    @Override public void write(String s, int off, int len)
+    {
+        _buffer.append(s, off, off + len);
+        drainIfFull();
+    }
+
+    void printEscaped(String value, EscapeTool tool)
+    {
+        try
+        {
+            tool.escape(value, _buffer);
+        }
+        catch (IOException x)
+        {
+            error(x);
+        }
+
+        drainIfFull();
+    }
+
+    private void drain(boolean endOfInput)
+    {
+        encodeBuffered(endOfInput);
+        writeBytes();
+    }
+
+    private void drainIfFull()
+    {
+        if (_buffer.length() >= _blockSize)
+        {
+            drain(false);
+        }
+    }
+
+    private void encodeBuffered(boolean endOfInput)
+    {
+        int len = _buffer.length();
+        int off = 0;
+
+        do
+        {
+            int n = Math.min(len - off, _chars.remaining());
+
+            _buffer.getChars(off, off + n, _chars.array(), _chars.position());
+            _chars.position(_chars.position() + n);
+            off += n;
+            _chars.flip();
+            encode(endOfInput && (off == len));
+            _chars.compact();
+        }
+        while (off < len);
+
+        _buffer.setLength(0);
+        if (endOfInput)
+        {
+            for (CoderResult r = _encoder.flush(_bytes); r.isOverflow(); r = _encoder.flush(_bytes))
+            {
+                writeBytes();
+            }
+        }
+    }
+
+    private void encode(boolean endOfInput)
+    {
+        for (;;)
+        {
+            CoderResult r = _encoder.encode(_chars, _bytes, endOfInput);
+
+            if (r.isOverflow())
+            {
+                writeBytes();
+            }
+            else if (r.isUnderflow())
+            {
+                break;
+            }
+            else
+            {
+                try
+                {
+                    r.throwException();
+                }
+                catch (CharacterCodingException x)
+                {
+                    error(x);
+
+                    break;
+                }
+            }
+        }
+    }
+
+    private void error(IOException x)
+    {
+        if (_exception == null)
+        {
+            _exception = x;
+        }
+
+        setError();
+    }
+
+    private void writeBytes()
+    {
+        _bytes.flip();
+        _written += _bytes.limit();
+        try
+        {
+            if (_stream != null)
+            {
+                _stream.write(_bytes.array(), 0, _bytes.limit());
+            }
+            else if (_channel != null)
+            {
+                while (_bytes.hasRemaining())
+                {
+                    _channel.write(_bytes);
+                }
+            }
+            else
+            {
+                _target.put(_bytes);
+            }
+        }
+        catch (IOException x)
+        {
+            error(x);
+        }
+        finally
+        {
+            _bytes.clear();
+        }
+    }
+
+    private static final class NullWriter extends Writer
+    {
+        private static final NullWriter INSTANCE = new NullWriter();
+
+        @Override public void close()
+        {
+            assert true;
+        }
+
+        @Override public void flush()
+        {
+            assert true;
+        }
+
+        @Override public void write(char[] cbuf, int off, int len)
+        {
+            assert true;
+        }
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.ini4j.spi;
 
+import java.io.IOException;
+
 public class EscapeTool
 {
     private static final String ESCAPE_LETTERS = "\\tnfbr:=";
@@ -31,6 +33,23 @@ public class EscapeTool
     static final int HEX_RADIX = 16;
     private static final int UNICODE_HEX_DIGITS = 4;
     static final char DOUBLE_QUOTE = '"';
+    private static final char[] ESCAPES = new char[ASCII_MAX + 1];
+    private static final char[] UNESCAPES = new char[ASCII_MAX + 1];
+    static final byte[] DIGITS = new byte[ASCII_MAX + 1];
+
+    static
+    {
+        for (int i = 0; i < ESCAPE_LETTERS.length(); i++)
+        {
+            ESCAPES[ESCAPEABLE_CHARS.charAt(i)] = ESCAPE_LETTERS.charAt(i);
+            UNESCAPES[ESCAPE_LETTERS.charAt(i)] = ESCAPEABLE_CHARS.charAt(i);
+        }
+
+        for (int i = 0; i < DIGITS.length; i++)
+        {
+            DIGITS[i] = (byte) Character.digit((char) i, HEX_RADIX);
+        }
+    }
 
     public static EscapeTool getInstance()
     {
@@ -39,33 +58,51 @@ public class EscapeTool
 
     public String escape(String line)
     {
-        int len = line.length();
-        StringBuilder buffer = new StringBuilder(len * 2);
+        String ret = line;
+
+        if (indexOfEscapable(line, 0) >= 0)
+        {
+            StringBuilder buffer = new StringBuilder(line.length() * 2);
+
+            try
+            {
+                escape(line, buffer);
+            }
+            catch (IOException x)
+            {
+                throw new IllegalStateException(x);
+            }
+
+            ret = buffer.toString();
+        }
+
+        return ret;
+    }
+
+    public void escape(CharSequence line, Appendable output) throws IOException
+    {
+        int start = 0;
 
-        for (int i = 0; i < len; i++)
+        for (int i = indexOfEscapable(line, 0); i >= 0; i = indexOfEscapable(line, start))
         {
             char c = line.charAt(i);
-            int idx = ESCAPEABLE_CHARS.indexOf(c);
+            char letter = (c <= ASCII_MAX) ? ESCAPES[c] : 0;
 
-            if (idx >= 0)
+            output.append(line, start, i);
+            if (letter == 0)
             {
-                buffer.append(ESCAPE_CHAR);
-                buffer.append(ESCAPE_LETTERS.charAt(idx));
+                escapeBinary(output, c);
             }
             else
             {
-                if ((c < ASCII_MIN) || (c > ASCII_MAX))
-                {
-                    escapeBinary(buffer, c);
-                }
-                else
-                {
-                    buffer.append(c);
-                }
+                output.append(ESCAPE_CHAR);
+                output.append(letter);
             }
+
+            start = i + 1;
         }
 
-        return buffer.toString();
+        output.append(line, start, line.length());
     }
 
     public String quote(String value)
@@ -98,94 +135,178 @@ public class EscapeTool
 
     public String unescape(String line)
     {
-        int n = line.length();
-        StringBuilder buffer = new StringBuilder(n);
-        int i = 0;
+        String ret = line;
 
-        while (i < n)
+        if (line.indexOf(ESCAPE_CHAR) >= 0)
         {
-            char c = line.charAt(i++);
+            StringBuilder buffer = new StringBuilder(line.length());
 
-            if (c == ESCAPE_CHAR)
+            try
             {
-                c = line.charAt(i++);
-                int next = unescapeBinary(buffer, c, line, i);
+                unescape(line, buffer);
+            }
+            catch (IOException x)
+            {
+                throw new IllegalStateException(x);
+            }
 
-                if (next == i)
-                {
-                    int idx = ESCAPE_LETTERS.indexOf(c);
+            ret = buffer.toString();
+        }
 
-                    if (idx >= 0)
-                    {
-                        c = ESCAPEABLE_CHARS.charAt(idx);
-                    }
+        return ret;
+    }
 
-                    buffer.append(c);
-                }
-                else
-                {
-                    i = next;
-                }
-            }
-            else
+    public void unescape(CharSequence line, Appendable output) throws IOException
+    {
+        int start = 0;
+
+        for (int i = indexOf(line, ESCAPE_CHAR, 0); i >= 0; i = indexOf(line, ESCAPE_CHAR, start))
+        {
+            char c = line.charAt(i + 1);
+
+            output.append(line, start, i);
+            start = unescapeBinary(output, c, line, i + 2);
+            if (start == (i + 2))
             {
-                buffer.append(c);
+                char unescaped = (c <= ASCII_MAX) ? UNESCAPES[c] : 0;
+
+                output.append((unescaped == 0) ? c : unescaped);
             }
         }
 
-        return buffer.toString();
+        output.append(line, start, line.length());
     }
 
     public String unquote(String value)
     {
-        StringBuilder buff = new StringBuilder();
-        boolean escape = false;
+        int len = value.length();
+        String ret;
 
-        for (int i = 1; i < (value.length() - 1); i++)
+        if (len < 2)
+        {
+            ret = "";
+        }
+        else if (value.indexOf(ESCAPE_CHAR, 1) < 0)
         {
-            char c = value.charAt(i);
+            ret = value.substring(1, len - 1);
+        }
+        else
+        {
+            StringBuilder buff = new StringBuilder(len);
+            boolean escape = false;
 
-            if (c == ESCAPE_CHAR)
+            for (int i = 1; i < (len - 1); i++)
             {
-                if (!escape)
+                char c = value.charAt(i);
+
+                if (c == ESCAPE_CHAR)
                 {
-                    escape = true;
+                    if (!escape)
+                    {
+                        escape = true;
+
+                        continue;
+                    }
 
-                    continue;
+                    escape = false;
                 }
 
-                escape = false;
+                buff.append(c);
             }
 
-            buff.append(c);
+            ret = buff.toString();
+        }
+
+        return ret;
+    }
+
+    static int parseDigits(CharSequence line, int index, int count, int radix)
+    {
+        int value = 0;
+
+        if ((index + count) > line.length())
+        {
+            value = -1;
         }
 
-        return buff.toString();
+        for (int i = index; (value >= 0) && (i < (index + count)); i++)
+        {
+            char c = line.charAt(i);
+            int digit = (c < DIGITS.length) ? DIGITS[c] : -1;
+
+            value = ((digit < 0) || (digit >= radix)) ? -1 : ((value * radix) + digit);
+        }
+
+        return value;
     }
 
-    void escapeBinary(StringBuilder buff, char c)
+    void escapeBinary(Appendable output, char c) throws IOException
     {
-        buff.append("\\u");
-        buff.append(HEX[(c >>> HEX_DIGIT_1_OFFSET) & HEX_DIGIT_MASK]);
-        buff.append(HEX[(c >>> HEX_DIGIT_2_OFFSET) & HEX_DIGIT_MASK]);
-        buff.append(HEX[(c >>> HEX_DIGIT_3_OFFSET) & HEX_DIGIT_MASK]);
-        buff.append(HEX[c & HEX_DIGIT_MASK]);
+        output.append(ESCAPE_CHAR);
+        output.append('u');
+        output.append(HEX[(c >>> HEX_DIGIT_1_OFFSET) & HEX_DIGIT_MASK]);
+        output.append(HEX[(c >>> HEX_DIGIT_2_OFFSET) & HEX_DIGIT_MASK]);
+        output.append(HEX[(c >>> HEX_DIGIT_3_OFFSET) & HEX_DIGIT_MASK]);
+        output.append(HEX[c & HEX_DIGIT_MASK]);
     }
 
-    int unescapeBinary(StringBuilder buff, char escapeType, String line, int index)
+    int indexOfEscapable(CharSequence line, int from)
+    {
+        int ret = -1;
+
+        for (int i = from; i < line.length(); i++)
+        {
+            char c = line.charAt(i);
+
+            if ((c < ASCII_MIN) || (c > ASCII_MAX) || (ESCAPES[c] != 0))
+            {
+                ret = i;
+
+                break;
+            }
+        }
+
+        return ret;
+    }
+
+    int unescapeBinary(Appendable output, char escapeType, CharSequence line, int index) throws IOException
     {
         int ret = index;
 
         if (escapeType == 'u')
         {
-            try
+            int c = parseDigits(line, index, UNICODE_HEX_DIGITS, HEX_RADIX);
+
+            if (c < 0)
             {
-                buff.append((char) Integer.parseInt(line.substring(index, index + UNICODE_HEX_DIGITS), HEX_RADIX));
-                ret = index + UNICODE_HEX_DIGITS;
+                throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
             }
-            catch (Exception x)
+
+            output.append((char) c);
+            ret = index + UNICODE_HEX_DIGITS;
+        }
+
+        return ret;
+    }
+
+    private static int indexOf(CharSequence line, char c, int from)
+    {
+        int ret = -1;
+
+        if (line instanceof String)
+        {
+            ret = ((String) line).indexOf(c, from);
+        }
+        else
+        {
+            for (int i = from; i < line.length(); i++)
             {
-                throw new IllegalArgumentException("Malformed \\uxxxx encoding.", x);
+                if (line.charAt(i) == c)
+                {
+                    ret = i;
+
+                    break;
+                }
             }
         }
 
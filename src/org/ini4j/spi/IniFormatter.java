@@ -16,10 +16,15 @@
 package org.ini4j.spi;
 
 import org.ini4j.Config;
+import org.ini4j.ConfigSnapshot;
 
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Writer;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
 public class IniFormatter extends AbstractFormatter implements IniHandler
 {
     public static IniFormatter newInstance(Writer out, Config config)
@@ -32,30 +37,46 @@ public class IniFormatter extends AbstractFormatter implements IniHandler
         return instance;
     }
 
+    public static IniFormatter newInstance(OutputStream out, Config config)
+    {
+        return newInstance(new BlockWriter(out, config.getFileEncoding()), config);
+    }
+
+    public static IniFormatter newInstance(WritableByteChannel out, Config config)
+    {
+        return newInstance(new BlockWriter(out, config.getFileEncoding()), config);
+    }
+
+    public static IniFormatter newInstance(ByteBuffer out, Config config)
+    {
+        return newInstance(new BlockWriter(out, config.getFileEncoding()), config);
+    }
+
     @Override public void endIni()
     {
         getOutput().flush();
+        endFormat();
     }
 
     @Override public void endSection()
     {
-        getOutput().print(getConfig().getLineSeparator());
+        getOutput().print(getSnapshot().getLineSeparator());
     }
 
     @Override public void startIni()
     {
-        assert true;
+        startFormat();
     }
 
     @Override public void startSection(String sectionName)
     {
         setHeader(false);
-        if (!getConfig().isGlobalSection() || !sectionName.equals(getConfig().getGlobalSectionName()))
+        if (!getSnapshot().is(ConfigSnapshot.GLOBAL_SECTION) || !sectionName.equals(getSnapshot().getGlobalSectionName()))
         {
             getOutput().print(IniParser.SECTION_BEGIN);
-            getOutput().print(escapeKey(sectionName));
+            printKey(sectionName);
             getOutput().print(IniParser.SECTION_END);
-            getOutput().print(getConfig().getLineSeparator());
+            getOutput().print(getSnapshot().getLineSeparator());
         }
     }
 
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j.spi;
+
+import java.net.URL;
+
+/**
+ * Listener for counters and timings of parsing and storing, set through
+ * Config.setMetrics.
+ *
+ * The default NONE instance does nothing and parsers only start timing when
+ * another one is set, so disabled metrics cost a no-op call at most. Times
+ * are in nanoseconds and reported per parse, store or included file.
+ */
+public interface IniMetrics
+{
+    IniMetrics NONE = new IniMetricsAdapter();
+
+    enum Phase
+    {
+        DECODE,
+        LEX,
+        BUILD,
+        FORMAT;
+    }
+
+    void bytesRead(long count);
+
+    void escapeDecoded();
+
+    void includeFollowed(URL location, long nanos);
+
+    void interpolationResolved();
+
+    void linesRead(int count);
+
+    void optionSeen();
+
+    void phase(Phase phase, long nanos);
+
+    void sectionSeen();
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j.spi;
+
+import java.net.URL;
+
+public class IniMetricsAdapter implements IniMetrics
+{
+    @Override public void bytesRead(long count)
+    {
+        assert true;
+    }
+
+    @Override public void escapeDecoded()
+    {
+        assert true;
+    }
+
+    @Override public void includeFollowed(URL location, long nanos)
+    {
+        assert true;
+    }
+
+    @Override public void interpolationResolved()
+    {
+        assert true;
+    }
+
+    @Override public void linesRead(int count)
+    {
+        assert true;
+    }
+
+    @Override public void optionSeen()
+    {
+        assert true;
+    }
+
+    @Override public void phase(Phase phase, long nanos)
+    {
+        assert true;
+    }
+
+    @Override public void sectionSeen()
+    {
+        assert true;
+    }
+}
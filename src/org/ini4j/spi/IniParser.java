@@ -16,6 +16,7 @@
 package org.ini4j.spi;
 
 import org.ini4j.Config;
+import org.ini4j.ConfigSnapshot;
 import org.ini4j.InvalidFileFormatException;
 
 import java.io.IOException;
@@ -24,8 +25,6 @@ import java.io.Reader;
 
 import java.net.URL;
 
-import java.util.Locale;
-
 public class IniParser extends AbstractParser
 {
     private static final String COMMENTS = ";#";
@@ -68,6 +67,24 @@ public class IniParser extends AbstractParser
     }
 
     private void parse(IniSource source, IniHandler handler) throws IOException, InvalidFileFormatException
+    {
+        PositionHandler positions = (source.isPositioned() && (handler instanceof PositionHandler)) ? (PositionHandler) handler : null;
+
+        if (getMetrics() == IniMetrics.NONE)
+        {
+            parse(source, handler, positions);
+        }
+        else
+        {
+            long start = System.nanoTime();
+            MeteredHandler metered = new MeteredHandler(handler, getMetrics());
+
+            parse(source, metered, positions);
+            report(source, metered, start);
+        }
+    }
+
+    private void parse(IniSource source, IniHandler handler, PositionHandler positions) throws IOException, InvalidFileFormatException
     {
         handler.startIni();
         String sectionName = null;
@@ -81,15 +98,25 @@ public class IniParser extends AbstractParser
                     handler.endSection();
                 }
 
+                if (positions != null)
+                {
+                    positions.handlePosition(source.getCommentOffset(), source.getLineOffset());
+                }
+
                 sectionName = parseSectionLine(line, source, handler);
             }
             else
             {
                 if (sectionName == null)
                 {
-                    if (getConfig().isGlobalSection())
+                    if (getSnapshot().is(ConfigSnapshot.GLOBAL_SECTION))
                     {
-                        sectionName = getConfig().getGlobalSectionName();
+                        sectionName = getSnapshot().getGlobalSectionName();
+                        if (positions != null)
+                        {
+                            positions.handlePosition(source.getCommentOffset(), source.getLineOffset());
+                        }
+
                         handler.startSection(sectionName);
                     }
                     else
@@ -107,6 +134,11 @@ public class IniParser extends AbstractParser
             handler.endSection();
         }
 
+        if (positions != null)
+        {
+            positions.handleEndPosition(source.getEndOffset(), source.isPositionValid());
+        }
+
         handler.endIni();
     }
 
@@ -120,16 +152,12 @@ public class IniParser extends AbstractParser
         }
 
         sectionName = unescapeKey(line.substring(1, line.length() - 1).trim());
-        if ((sectionName.length() == 0) && !getConfig().isUnnamedSection())
+        if ((sectionName.length() == 0) && !getSnapshot().is(ConfigSnapshot.UNNAMED_SECTION))
         {
             parseError(line, source.getLineNumber());
         }
 
-        if (getConfig().isLowerCaseSection())
-        {
-            sectionName = sectionName.toLowerCase(Locale.getDefault());
-        }
-
+        sectionName = toSectionName(sectionName);
         handler.startSection(sectionName);
 
         return sectionName;
@@ -15,7 +15,7 @@
  */
 package org.ini4j.spi;
 
-import org.ini4j.Config;
+import org.ini4j.ConfigSnapshot;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -31,38 +31,90 @@ class IniSource
     public static final char INCLUDE_OPTIONAL = '?';
     private static final char ESCAPE_CHAR = '\\';
     private URL _base;
+    private final StringBuilder _buffer = new StringBuilder();
     private IniSource _chain;
+    private long _chainStart;
+    private final StringBuilder _comment = new StringBuilder();
+    private long _commentOffset;
     private final String _commentChars;
-    private final Config _config;
+    private final boolean _comments;
+    private final ConfigSnapshot _config;
+    private long _decodeNanos;
+    private final boolean _escapeNewline;
     private final HandlerBase _handler;
+    private final boolean _include;
+    private boolean _included;
+    private long _lineOffset;
+    private int _lines;
+    private final String _lineSeparator;
+    private final boolean _metered;
+    private final IniMetrics _metrics;
+    private final PositionReader _positions;
     private final LineNumberReader _reader;
 
-    IniSource(InputStream input, HandlerBase handler, String comments, Config config)
+    IniSource(InputStream input, HandlerBase handler, String comments, ConfigSnapshot config)
     {
-        this(new UnicodeInputStreamReader(input, config.getFileEncoding()), handler, comments, config);
+        this(new UnicodeInputStreamReader(meter(input, config), config.getFileEncoding()), handler, comments, config);
     }
 
-    IniSource(Reader input, HandlerBase handler, String comments, Config config)
+    IniSource(Reader input, HandlerBase handler, String comments, ConfigSnapshot config)
     {
-        _reader = new LineNumberReader(input);
+        if (config.is(ConfigSnapshot.INCREMENTAL_STORE) && (input instanceof UnicodeInputStreamReader))
+        {
+            _positions = new PositionReader((UnicodeInputStreamReader) input);
+            _reader = null;
+        }
+        else
+        {
+            _positions = null;
+            _reader = new LineNumberReader(input);
+        }
+
         _handler = handler;
         _commentChars = comments;
         _config = config;
+        _comments = config.is(ConfigSnapshot.COMMENT);
+        _escapeNewline = config.is(ConfigSnapshot.ESCAPE_NEWLINE);
+        _include = config.is(ConfigSnapshot.INCLUDE);
+        _lineSeparator = config.getLineSeparator();
+        _metrics = config.getMetrics();
+        _metered = _metrics != IniMetrics.NONE;
     }
 
-    IniSource(URL input, HandlerBase handler, String comments, Config config) throws IOException
+    IniSource(URL input, HandlerBase handler, String comments, ConfigSnapshot config) throws IOException
     {
-        this(new UnicodeInputStreamReader(input.openStream(), config.getFileEncoding()), handler, comments, config);
+        this(new UnicodeInputStreamReader(meter(input.openStream(), config), config.getFileEncoding()), handler, comments, config);
         _base = input;
     }
 
+    long getCommentOffset()
+    {
+        return _commentOffset;
+    }
+
+    // time spent reading lines, including the included sources
+    long getDecodeNanos()
+    {
+        return _decodeNanos + ((_chain == null) ? 0 : _chain.getDecodeNanos());
+    }
+
+    long getEndOffset()
+    {
+        return _positions.getOffset();
+    }
+
+    long getLineOffset()
+    {
+        return _lineOffset;
+    }
+
     int getLineNumber()
     {
         int ret;
 
         if (_chain == null)
         {
-            ret = _reader.getLineNumber();
+            ret = (_positions == null) ? _reader.getLineNumber() : _positions.getLineNumber();
         }
         else
         {
@@ -72,6 +124,16 @@ class IniSource
         return ret;
     }
 
+    boolean isPositioned()
+    {
+        return (_positions != null) && !_included;
+    }
+
+    boolean isPositionValid()
+    {
+        return isPositioned() && _positions.isValid();
+    }
+
     String readLine() throws IOException
     {
         String line;
@@ -85,6 +147,12 @@ class IniSource
             line = _chain.readLine();
             if (line == null)
             {
+                if (_metered)
+                {
+                    _decodeNanos += _chain.getDecodeNanos();
+                    _metrics.includeFollowed(_chain._base, System.nanoTime() - _chainStart);
+                }
+
                 _chain = null;
                 line = readLine();
             }
@@ -93,9 +161,26 @@ class IniSource
         return line;
     }
 
+    private static InputStream meter(InputStream input, ConfigSnapshot config)
+    {
+        return (config.getMetrics() == IniMetrics.NONE) ? input : new MeteredInputStream(input, config.getMetrics());
+    }
+
     private void close() throws IOException
     {
-        _reader.close();
+        if (_positions == null)
+        {
+            _reader.close();
+        }
+        else
+        {
+            _positions.close();
+        }
+
+        if (_metered)
+        {
+            _metrics.linesRead(_lines);
+        }
     }
 
     private int countEndingEscapes(String line)
@@ -110,21 +195,37 @@ class IniSource
         return escapeCount;
     }
 
-    private void handleComment(StringBuilder buff)
+    // without the comment flag the text is not collected and handlers are not
+    // called, only section spans are told where a comment was
+    private boolean handleComment(boolean commented, long offset)
     {
-        if (buff.length() != 0)
+        if (!_comments)
+        {
+            if (commented)
+            {
+                _commentOffset = offset;
+                if ((_positions != null) && (_handler instanceof PositionHandler))
+                {
+                    ((PositionHandler) _handler).handleSkippedComment();
+                }
+            }
+        }
+        else if (_comment.length() != 0)
         {
-            buff.deleteCharAt(buff.length() - 1);
-            _handler.handleComment(buff.toString());
-            buff.delete(0, buff.length());
+            _commentOffset = offset;
+            _comment.setLength(_comment.length() - 1);
+            _handler.handleComment(_comment.toString());
+            _comment.setLength(0);
         }
+
+        return false;
     }
 
     private String handleInclude(String input) throws IOException
     {
         String line = input;
 
-        if (_config.isInclude() && (line.length() > 2) && (line.charAt(0) == INCLUDE_BEGIN) && (line.charAt(line.length() - 1) == INCLUDE_END))
+        if (_include && (line.length() > 2) && (line.charAt(0) == INCLUDE_BEGIN) && (line.charAt(line.length() - 1) == INCLUDE_END))
         {
             line = line.substring(1, line.length() - 1).trim();
             boolean optional = line.charAt(0) == INCLUDE_OPTIONAL;
@@ -134,8 +235,11 @@ class IniSource
                 line = line.substring(1).trim();
             }
 
+            _included = true;
             URL loc = (_base == null) ? new URL(line) : new URL(_base, line);
 
+            _chainStart = _metered ? System.nanoTime() : 0;
+
             if (optional)
             {
                 try
@@ -180,40 +284,76 @@ class IniSource
     private String readLineSkipComments() throws IOException
     {
         String line;
-        StringBuilder comment = new StringBuilder();
-        StringBuilder buff = new StringBuilder();
+        StringBuilder buff = _buffer;
+        boolean commented = false;
+        long commentOffset = 0;
 
-        for (line = _reader.readLine(); line != null; line = _reader.readLine())
+        for (line = readRawLine(); line != null; line = readRawLine())
         {
             line = line.trim();
             if (line.length() == 0)
             {
-                handleComment(comment);
+                commented = handleComment(commented, commentOffset);
             }
             else if ((_commentChars.indexOf(line.charAt(0)) >= 0) && (buff.length() == 0))
             {
-                comment.append(line.substring(1));
-                comment.append(_config.getLineSeparator());
+                if ((_positions != null) && !commented)
+                {
+                    commentOffset = _positions.getLineOffset();
+                }
+
+                commented = true;
+                if (_comments)
+                {
+                    _comment.append(line, 1, line.length());
+                    _comment.append(_lineSeparator);
+                }
             }
             else
             {
-                handleComment(comment);
-                if (!_config.isEscapeNewline() || ((countEndingEscapes(line) & 1) == 0))
+                commented = handleComment(commented, commentOffset);
+                if ((_positions != null) && (buff.length() == 0))
+                {
+                    _lineOffset = _positions.getLineOffset();
+                }
+
+                if (!_escapeNewline || ((countEndingEscapes(line) & 1) == 0))
                 {
-                    buff.append(line);
-                    line = buff.toString();
+                    if (buff.length() != 0)
+                    {
+                        line = buff.append(line).toString();
+                        buff.setLength(0);
+                    }
 
                     break;
                 }
 
-                buff.append(line.subSequence(0, line.length() - 1));
+                buff.append(line, 0, line.length() - 1);
             }
         }
 
         // handle end comments
-        if ((line == null) && (comment.length() != 0))
+        if (line == null)
+        {
+            buff.setLength(0);
+            handleComment(commented, commentOffset);
+        }
+
+        return line;
+    }
+
+    private String readRawLine() throws IOException
+    {
+        long start = _metered ? System.nanoTime() : 0;
+        String line = (_positions == null) ? _reader.readLine() : _positions.readLine();
+
+        if (_metered)
         {
-            handleComment(comment);
+            _decodeNanos += System.nanoTime() - start;
+            if (line != null)
+            {
+                _lines++;
+            }
         }
 
         return line;
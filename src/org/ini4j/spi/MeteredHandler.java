@@ -0,0 +1,101 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j.spi;
+
+// times the handler callbacks of a parse and counts sections and options
+final class MeteredHandler implements IniHandler, OptionsHandler
+{
+    private final HandlerBase _handler;
+    private final IniMetrics _metrics;
+    private long _nanos;
+
+    MeteredHandler(HandlerBase handler, IniMetrics metrics)
+    {
+        _handler = handler;
+        _metrics = metrics;
+    }
+
+    @Override public void endIni()
+    {
+        long start = System.nanoTime();
+
+        ((IniHandler) _handler).endIni();
+        _nanos += System.nanoTime() - start;
+    }
+
+    @Override public void endOptions()
+    {
+        long start = System.nanoTime();
+
+        ((OptionsHandler) _handler).endOptions();
+        _nanos += System.nanoTime() - start;
+    }
+
+    @Override public void endSection()
+    {
+        long start = System.nanoTime();
+
+        ((IniHandler) _handler).endSection();
+        _nanos += System.nanoTime() - start;
+    }
+
+    @Override public void handleComment(String comment)
+    {
+        long start = System.nanoTime();
+
+        _handler.handleComment(comment);
+        _nanos += System.nanoTime() - start;
+    }
+
+    @Override public void handleOption(String optionName, String optionValue)
+    {
+        long start = System.nanoTime();
+
+        _metrics.optionSeen();
+        _handler.handleOption(optionName, optionValue);
+        _nanos += System.nanoTime() - start;
+    }
+
+    @Override public void startIni()
+    {
+        long start = System.nanoTime();
+
+        ((IniHandler) _handler).startIni();
+        _nanos += System.nanoTime() - start;
+    }
+
+    @Override public void startOptions()
+    {
+        long start = System.nanoTime();
+
+        ((OptionsHandler) _handler).startOptions();
+        _nanos += System.nanoTime() - start;
+    }
+
+    @Override public void startSection(String sectionName)
+    {
+        long start = System.nanoTime();
+
+        _metrics.sectionSeen();
+        ((IniHandler) _handler).startSection(sectionName);
+        _nanos += System.nanoTime() - start;
+    }
+
+    long getNanos()
+    {
+        return _nanos;
+    }
+}
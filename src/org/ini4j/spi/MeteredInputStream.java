@@ -0,0 +1,76 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j.spi;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// counts the bytes read and reports them when closed
+class MeteredInputStream extends FilterInputStream
+{
+    private long _count;
+    private final IniMetrics _metrics;
+
+    MeteredInputStream(InputStream input, IniMetrics metrics)
+    {
+        super(input);
+        _metrics = metrics;
+    }
+
+    @Override public void close() throws IOException
+    {
+        super.close();
+        if (_count >= 0)
+        {
+            _metrics.bytesRead(_count);
+            _count = -1;
+        }
+    }
+
+    @Override public int read() throws IOException
+    {
+        int ret = super.read();
+
+        if (ret >= 0)
+        {
+            _count++;
+        }
+
+        return ret;
+    }
+
+    @Override public int read(byte[] buff, int off, int len) throws IOException
+    {
+        int ret = super.read(buff, off, len);
+
+        if (ret > 0)
+        {
+            _count += ret;
+        }
+
+        return ret;
+    }
+
+    @Override public long skip(long n) throws IOException
+    {
+        long ret = super.skip(n);
+
+        _count += ret;
+
+        return ret;
+    }
+}
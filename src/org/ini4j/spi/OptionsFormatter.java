@@ -17,9 +17,13 @@ package org.ini4j.spi;
 
 import org.ini4j.Config;
 
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Writer;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
 public class OptionsFormatter extends AbstractFormatter implements OptionsHandler
 {
     public static OptionsFormatter newInstance(Writer out, Config config)
@@ -32,14 +36,30 @@ public class OptionsFormatter extends AbstractFormatter implements OptionsHandle
         return instance;
     }
 
+    public static OptionsFormatter newInstance(OutputStream out, Config config)
+    {
+        return newInstance(new BlockWriter(out, config.getFileEncoding()), config);
+    }
+
+    public static OptionsFormatter newInstance(WritableByteChannel out, Config config)
+    {
+        return newInstance(new BlockWriter(out, config.getFileEncoding()), config);
+    }
+
+    public static OptionsFormatter newInstance(ByteBuffer out, Config config)
+    {
+        return newInstance(new BlockWriter(out, config.getFileEncoding()), config);
+    }
+
     public void endOptions()
     {
         getOutput().flush();
+        endFormat();
     }
 
     public void startOptions()
     {
-        assert true;
+        startFormat();
     }
 
     private static OptionsFormatter newInstance()
@@ -64,6 +64,22 @@ public class OptionsParser extends AbstractParser
     }
 
     private void parse(IniSource source, OptionsHandler handler) throws IOException, InvalidFileFormatException
+    {
+        if (getMetrics() == IniMetrics.NONE)
+        {
+            parseLines(source, handler);
+        }
+        else
+        {
+            long start = System.nanoTime();
+            MeteredHandler metered = new MeteredHandler(handler, getMetrics());
+
+            parseLines(source, metered);
+            report(source, metered, start);
+        }
+    }
+
+    private void parseLines(IniSource source, OptionsHandler handler) throws IOException, InvalidFileFormatException
     {
         handler.startOptions();
         for (String line = source.readLine(); line != null; line = source.readLine())
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j.spi;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Line reader which keeps track of the byte offset of every line in the
+ * underlying stream. Line terminators are recognized the same way as by
+ * BufferedReader.
+ */
+class PositionReader
+{
+    private static final int BUFFER_SIZE = 0x2000;
+    private static final String UTF8 = "UTF-8";
+    private final char[] _buffer = new char[BUFFER_SIZE];
+    private ByteBuffer _bytes;
+    private CharsetEncoder _encoder;
+    private final UnicodeInputStreamReader _input;
+    private int _limit;
+    private int _lineNumber;
+    private long _lineOffset;
+    private long _offset;
+    private int _pos;
+    private boolean _singleByte;
+    private boolean _skipLF;
+    private int _unit;
+    private boolean _utf8;
+
+    PositionReader(UnicodeInputStreamReader input)
+    {
+        _input = input;
+    }
+
+    int getLineNumber()
+    {
+        return _lineNumber;
+    }
+
+    long getLineOffset()
+    {
+        return _lineOffset;
+    }
+
+    long getOffset()
+    {
+        return _offset;
+    }
+
+    boolean isValid()
+    {
+        return _unit > 0;
+    }
+
+    void close() throws IOException
+    {
+        _input.close();
+    }
+
+    String readLine() throws IOException
+    {
+        init();
+        if (_skipLF)
+        {
+            _skipLF = false;
+            if (((_pos < _limit) || fill()) && (_buffer[_pos] == '\n'))
+            {
+                _pos++;
+                _offset += _unit;
+            }
+        }
+
+        _lineOffset = _offset;
+        StringBuilder line = null;
+
+        for (;;)
+        {
+            if ((_pos >= _limit) && !fill())
+            {
+                String str = null;
+
+                if (line != null)
+                {
+                    str = line.toString();
+                    _offset += count(str);
+                    _lineNumber++;
+                }
+
+                return str;
+            }
+
+            int start = _pos;
+
+            while ((_pos < _limit) && (_buffer[_pos] != '\n') && (_buffer[_pos] != '\r'))
+            {
+                _pos++;
+            }
+
+            if (_pos < _limit)
+            {
+                String str;
+
+                if (line == null)
+                {
+                    str = new String(_buffer, start, _pos - start);
+                }
+                else
+                {
+                    line.append(_buffer, start, _pos - start);
+                    str = line.toString();
+                }
+
+                _offset += count(str) + _unit;
+                _lineNumber++;
+                if (_buffer[_pos++] == '\r')
+                {
+                    if (_pos < _limit)
+                    {
+                        if (_buffer[_pos] == '\n')
+                        {
+                            _pos++;
+                            _offset += _unit;
+                        }
+                    }
+                    else
+                    {
+                        _skipLF = true;
+                    }
+                }
+
+                return str;
+            }
+
+            if (line == null)
+            {
+                line = new StringBuilder(BUFFER_SIZE);
+            }
+
+            line.append(_buffer, start, _pos - start);
+        }
+    }
+
+    private long count(String str)
+    {
+        long ret;
+
+        if (_utf8)
+        {
+            ret = countUTF8(str);
+        }
+        else if (_singleByte)
+        {
+            ret = str.length();
+        }
+        else
+        {
+            ret = countEncoded(str);
+        }
+
+        return ret;
+    }
+
+    private long countEncoded(String str)
+    {
+        CharBuffer chars = CharBuffer.wrap(str);
+        long ret = 0;
+
+        _encoder.reset();
+        for (CoderResult r = _encoder.encode(chars, _bytes, true); r.isOverflow(); r = _encoder.encode(chars, _bytes, true))
+        {
+            ret += _bytes.position();
+            _bytes.clear();
+        }
+
+        for (CoderResult r = _encoder.flush(_bytes); r.isOverflow(); r = _encoder.flush(_bytes))
+        {
+            ret += _bytes.position();
+            _bytes.clear();
+        }
+
+        ret += _bytes.position();
+        _bytes.clear();
+
+        return ret;
+    }
+
+    private long countUTF8(String str)
+    {
+        int len = str.length();
+        long ret = len;
+
+        for (int i = 0; i < len; i++)
+        {
+            char c = str.charAt(i);
+
+            if (c >= 0x80)
+            {
+                if (c < 0x800)
+                {
+                    ret += 1;
+                }
+                else if (Character.isHighSurrogate(c) && ((i + 1) < len) && Character.isLowSurrogate(str.charAt(i + 1)))
+                {
+                    ret += 2;
+                    i++;
+                }
+                else if (Character.isSurrogate(c))
+                {
+                    assert true;
+                }
+                else
+                {
+                    ret += 2;
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    private boolean fill() throws IOException
+    {
+        int n;
+
+        do
+        {
+            n = _input.read(_buffer, 0, _buffer.length);
+        }
+        while (n == 0);
+        _pos = 0;
+        _limit = Math.max(n, 0);
+
+        return n > 0;
+    }
+
+    private void init() throws IOException
+    {
+        if (_unit == 0)
+        {
+            Charset charset = _input.getEncoding();
+            int one = "\n".getBytes(charset).length;
+            int two = "\n\n".getBytes(charset).length;
+
+            _offset = _input.getBomLength();
+            _unit = (two == (2 * one)) ? one : -1;
+            _utf8 = UTF8.equals(charset.name());
+            _encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+            _singleByte = _encoder.maxBytesPerChar() == 1;
+            _bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+    }
+}
@@ -22,7 +22,7 @@ import org.ini4j.Reg;
 import org.ini4j.Registry.Key;
 import org.ini4j.Registry.Type;
 
-public class RegBuilder extends AbstractProfileBuilder
+public class RegBuilder extends AbstractProfileBuilder implements RegHandler
 {
     private Reg _reg;
 
@@ -40,6 +40,16 @@ public class RegBuilder extends AbstractProfileBuilder
         _reg = value;
     }
 
+    @Override public void endKey()
+    {
+        endSection();
+    }
+
+    @Override public void endReg()
+    {
+        endIni();
+    }
+
     @Override public void handleOption(String rawName, String rawValue)
     {
         String name = (rawName.charAt(0) == EscapeTool.DOUBLE_QUOTE) ? RegEscapeTool.getInstance().unquote(rawName) : rawName;
@@ -56,6 +66,32 @@ public class RegBuilder extends AbstractProfileBuilder
         }
     }
 
+    @Override public void handleValue(String name, Type type, String data)
+    {
+        if (type == Type.REG_SZ)
+        {
+            super.handleOption(name, data);
+        }
+        else
+        {
+            ((Key) getCurrentSection()).putType(name, type);
+            for (String value : RegEscapeTool.getInstance().decode(type, data).getValues())
+            {
+                super.handleOption(name, value);
+            }
+        }
+    }
+
+    @Override public void startKey(String keyName)
+    {
+        startSection(keyName);
+    }
+
+    @Override public void startReg(String version)
+    {
+        startIni();
+    }
+
     @Override Config getConfig()
     {
         return _reg.getConfig();
@@ -21,9 +21,13 @@ import org.ini4j.Registry.Type;
 
 import java.io.UnsupportedEncodingException;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public class RegEscapeTool extends EscapeTool
 {
@@ -32,6 +36,11 @@ public class RegEscapeTool extends EscapeTool
     private static final int LOWER_DIGIT = 0x0f;
     private static final int UPPER_DIGIT = 0xf0;
     private static final int DIGIT_SIZE = 4;
+    private static final int DWORD_DIGITS = 8;
+    private static final int DWORD_SIZE = 4;
+    private static final long DWORD_MASK = 0xffffffffL;
+    private static final int TERMINATOR_SIZE = 2;
+    private static final char BYTE_SEPARATOR = ',';
 
     public static final RegEscapeTool getInstance()
     {
@@ -41,35 +50,71 @@ public class RegEscapeTool extends EscapeTool
     public TypeValuesPair decode(String raw)
     {
         Type type = type(raw);
-        String value = (type == Type.REG_SZ) ? unquote(raw) : raw.substring(type.toString().length() + 1);
-        String[] values;
+        TypeValuesPair ret;
+
+        if (type == Type.REG_SZ)
+        {
+            ret = new TypeValuesPair(type, new String[] { unquote(raw) });
+        }
+        else if (type == Type.REG_REMOVE)
+        {
+            ret = new TypeValuesPair(type, new String[] { "" });
+        }
+        else
+        {
+            ret = decode(type, raw.substring(type.toString().length() + 1));
+        }
+
+        return ret;
+    }
+
+    public TypeValuesPair decode(Type type, String data)
+    {
+        TypeValuesPair ret;
 
         switch (type)
         {
 
             case REG_EXPAND_SZ:
             case REG_MULTI_SZ:
-                value = bytes2string(binary(value));
+                ret = decode(type, binary(data));
                 break;
 
             case REG_DWORD:
-                value = String.valueOf(Long.parseLong(value, HEX_RADIX));
-                break;
-
-            case REG_SZ:
+                ret = new TypeValuesPair(type, new String[] { String.valueOf(Long.parseLong(data, HEX_RADIX)) });
                 break;
 
             default:
+                ret = new TypeValuesPair(type, new String[] { data });
                 break;
         }
 
-        if (type == Type.REG_MULTI_SZ)
-        {
-            values = splitMulti(value);
-        }
-        else
+        return ret;
+    }
+
+    public TypeValuesPair decode(Type type, byte[] data)
+    {
+        String[] values;
+
+        switch (type)
         {
-            values = new String[] { value };
+
+            case REG_SZ:
+            case REG_EXPAND_SZ:
+                values = new String[] { bytes2string(data, 0, Math.max(0, data.length - TERMINATOR_SIZE)) };
+                break;
+
+            case REG_MULTI_SZ:
+                values = splitMulti(data);
+                break;
+
+            case REG_DWORD:
+                values = new String[] { String.valueOf(ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).getInt() & DWORD_MASK) };
+                break;
+
+            default:
+                values = new String[] { hexadecimal(data) };
+                break;
         }
 
         return new TypeValuesPair(type, values);
@@ -83,6 +128,10 @@ public class RegEscapeTool extends EscapeTool
         {
             ret = quote(data.getValues()[0]);
         }
+        else if (data.getType() == Type.REG_REMOVE)
+        {
+            ret = Type.REMOVE;
+        }
         else if (data.getValues()[0] != null)
         {
             ret = encode(data.getType(), data.getValues());
@@ -91,39 +140,97 @@ public class RegEscapeTool extends EscapeTool
         return ret;
     }
 
-    byte[] binary(String value)
+    public byte[] binary(TypeValuesPair data)
+    {
+        String[] values = data.getValues();
+        byte[] ret;
+
+        switch (data.getType())
+        {
+
+            case REG_SZ:
+            case REG_EXPAND_SZ:
+                ret = strings2bytes(values, 1, false);
+                break;
+
+            case REG_MULTI_SZ:
+                ret = strings2bytes(values, values.length, true);
+                break;
+
+            case REG_DWORD:
+                ret = ByteBuffer.allocate(DWORD_SIZE).order(ByteOrder.LITTLE_ENDIAN).putInt((int) Long.parseLong(values[0])).array();
+                break;
+
+            default:
+                ret = binary(values[0]);
+                break;
+        }
+
+        return ret;
+    }
+
+    public byte[] binary(String value)
     {
-        byte[] bytes = new byte[value.length()];
+        int len = value.length();
+        byte[] bytes = new byte[Math.max(1, (len + 1) / 3)];
         int idx = 0;
         int shift = DIGIT_SIZE;
+        boolean empty = true;
 
-        for (int i = 0; i < value.length(); i++)
+        for (int i = 0; i < len; i++)
         {
             char c = value.charAt(i);
 
-            if (Character.isWhitespace(c))
-            {
-                continue;
-            }
-
-            if (c == ',')
+            if (c == BYTE_SEPARATOR)
             {
+                empty = false;
                 idx++;
                 shift = DIGIT_SIZE;
             }
             else
             {
-                int digit = Character.digit(c, HEX_RADIX);
+                int digit = (c < DIGITS.length) ? DIGITS[c] : -1;
 
                 if (digit >= 0)
                 {
+                    if (idx >= bytes.length)
+                    {
+                        bytes = Arrays.copyOf(bytes, Math.max(idx + 1, bytes.length * 2));
+                    }
+
                     bytes[idx] |= digit << shift;
                     shift = 0;
+                    empty = false;
                 }
             }
         }
 
-        return Arrays.copyOfRange(bytes, 0, idx + 1);
+        return empty ? new byte[0] : ((idx + 1 == bytes.length) ? bytes : Arrays.copyOf(bytes, idx + 1));
+    }
+
+    public String hexadecimal(byte[] data)
+    {
+        StringBuilder buff = new StringBuilder(data.length * 3);
+
+        hexadecimal(buff, ByteBuffer.wrap(data));
+
+        return buff.toString();
+    }
+
+    public void hexadecimal(StringBuilder buff, ByteBuffer data)
+    {
+        for (int i = data.position(); i < data.limit(); i++)
+        {
+            int b = data.get(i);
+
+            if (i != data.position())
+            {
+                buff.append(BYTE_SEPARATOR);
+            }
+
+            buff.append(HEX[(b & UPPER_DIGIT) >> DIGIT_SIZE]);
+            buff.append(HEX[b & LOWER_DIGIT]);
+        }
     }
 
     String encode(Type type, String[] values)
@@ -136,23 +243,26 @@ public class RegEscapeTool extends EscapeTool
         {
 
             case REG_EXPAND_SZ:
-                buff.append(hexadecimal(values[0]));
-                break;
+                if ((values[0] != null) && (values[0].length() != 0))
+                {
+                    hexadecimal(buff, ByteBuffer.wrap(binary(new TypeValuesPair(type, values))));
+                }
 
-            case REG_DWORD:
-                buff.append(String.format("%08x", Long.parseLong(values[0])));
                 break;
 
-            case REG_MULTI_SZ:
-                int n = values.length;
+            case REG_DWORD:
+                String hex = Long.toHexString(Long.parseLong(values[0]));
 
-                for (int i = 0; i < n; i++)
+                for (int i = hex.length(); i < DWORD_DIGITS; i++)
                 {
-                    buff.append(hexadecimal(values[i]));
-                    buff.append(',');
+                    buff.append('0');
                 }
 
-                buff.append("00,00");
+                buff.append(hex);
+                break;
+
+            case REG_MULTI_SZ:
+                hexadecimal(buff, ByteBuffer.wrap(binary(new TypeValuesPair(type, values))));
                 break;
 
             default:
@@ -163,27 +273,6 @@ public class RegEscapeTool extends EscapeTool
         return buff.toString();
     }
 
-    String hexadecimal(String value)
-    {
-        StringBuilder buff = new StringBuilder();
-
-        if ((value != null) && (value.length() != 0))
-        {
-            byte[] bytes = string2bytes(value);
-
-            for (int i = 0; i < bytes.length; i++)
-            {
-                buff.append(Character.forDigit((bytes[i] & UPPER_DIGIT) >> DIGIT_SIZE, HEX_RADIX));
-                buff.append(Character.forDigit(bytes[i] & LOWER_DIGIT, HEX_RADIX));
-                buff.append(',');
-            }
-
-            buff.append("00,00");
-        }
-
-        return buff.toString();
-    }
-
     Registry.Type type(String raw)
     {
         Registry.Type type;
@@ -192,6 +281,10 @@ public class RegEscapeTool extends EscapeTool
         {
             type = Registry.Type.REG_SZ;
         }
+        else if (raw.equals(Registry.Type.REMOVE))
+        {
+            type = Registry.Type.REG_REMOVE;
+        }
         else
         {
             int idx = raw.indexOf(Registry.TYPE_SEPARATOR);
@@ -203,19 +296,19 @@ public class RegEscapeTool extends EscapeTool
     }
 
     // XXX Java 1.4 compatibility hack
-    private String bytes2string(byte[] bytes)
+    private String bytes2string(byte[] bytes, int offset, int length)
     {
         String str;
 
         try
         {
-            str = new String(bytes, 0, bytes.length - 2, HEX_CHARSET);
+            str = new String(bytes, offset, length, HEX_CHARSET);
         }
         catch (NoSuchMethodError x)
         {
             try
             {
-                str = new String(bytes, 0, bytes.length, HEX_CHARSET.name());
+                str = new String(bytes, offset, length, HEX_CHARSET.name());
             }
             catch (UnsupportedEncodingException ex)
             {
@@ -226,35 +319,22 @@ public class RegEscapeTool extends EscapeTool
         return str;
     }
 
-    private String[] splitMulti(String value)
+    private String[] splitMulti(byte[] data)
     {
-        int len = value.length();
-        int start;
-        int end;
-        int n = 0;
+        List<String> values = new ArrayList<String>();
+        int len = data.length - TERMINATOR_SIZE;
+        int start = 0;
 
-        start = 0;
-        for (end = value.indexOf(0, start); end >= 0; end = value.indexOf(0, start))
+        for (int i = 0; (i + 1) < len; i += TERMINATOR_SIZE)
         {
-            n++;
-            start = end + 1;
-            if (start >= len)
+            if ((data[i] == 0) && (data[i + 1] == 0))
             {
-                break;
+                values.add(bytes2string(data, start, i - start));
+                start = i + TERMINATOR_SIZE;
             }
         }
 
-        String[] values = new String[n];
-
-        start = 0;
-        for (int i = 0; i < n; i++)
-        {
-            end = value.indexOf(0, start);
-            values[i] = value.substring(start, end);
-            start = end + 1;
-        }
-
-        return values;
+        return values.toArray(new String[values.size()]);
     }
 
     // XXX Java 1.4 compatibility hack
@@ -280,4 +360,26 @@ public class RegEscapeTool extends EscapeTool
 
         return bytes;
     }
+
+    private byte[] strings2bytes(String[] values, int count, boolean multi)
+    {
+        byte[][] parts = new byte[count][];
+        int size = multi ? TERMINATOR_SIZE : 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            parts[i] = (values[i] == null) ? new byte[0] : string2bytes(values[i]);
+            size += parts[i].length + TERMINATOR_SIZE;
+        }
+
+        ByteBuffer buff = ByteBuffer.allocate(size);
+
+        for (byte[] part : parts)
+        {
+            buff.put(part);
+            buff.position(buff.position() + TERMINATOR_SIZE);
+        }
+
+        return buff.array();
+    }
 }
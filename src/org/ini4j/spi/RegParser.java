@@ -0,0 +1,296 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j.spi;
+
+import org.ini4j.Config;
+import org.ini4j.ConfigSnapshot;
+import org.ini4j.InvalidFileFormatException;
+import org.ini4j.Registry;
+import org.ini4j.Registry.Type;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import java.net.URL;
+
+import java.util.Locale;
+
+public class RegParser extends AbstractParser
+{
+    private static final String COMMENTS = ";#";
+    private static final String OPERATORS = "=";
+    private static final char OPERATOR = '=';
+    private static final char BOM = '\uFEFF';
+    private static final char ESCAPE_CHAR = '\\';
+    private String _version = Registry.VERSION;
+
+    public RegParser()
+    {
+        super(OPERATORS, COMMENTS);
+    }
+
+    public static RegParser newInstance()
+    {
+        return ServiceFinder.findService(RegParser.class);
+    }
+
+    public static RegParser newInstance(Config config)
+    {
+        RegParser instance = newInstance();
+
+        instance.setConfig(config);
+
+        return instance;
+    }
+
+    public String getVersion()
+    {
+        return _version;
+    }
+
+    // null accepts any version header
+    public void setVersion(String value)
+    {
+        _version = value;
+    }
+
+    public void parse(InputStream input, RegHandler handler) throws IOException, InvalidFileFormatException
+    {
+        parse(new RegSource(input, getConfig().getFileEncoding()), handler);
+    }
+
+    public void parse(Reader input, RegHandler handler) throws IOException, InvalidFileFormatException
+    {
+        parse(new RegSource(input), handler);
+    }
+
+    public void parse(URL input, RegHandler handler) throws IOException, InvalidFileFormatException
+    {
+        parse(input.openStream(), handler);
+    }
+
+    private void parse(RegSource source, RegHandler handler) throws IOException, InvalidFileFormatException
+    {
+        setSnapshot(getConfig().getSnapshot());
+        try
+        {
+            handler.startReg(parseVersion(source));
+            parseBody(source, handler);
+            handler.endReg();
+        }
+        finally
+        {
+            source.close();
+        }
+    }
+
+    private void parseBody(RegSource source, RegHandler handler) throws IOException, InvalidFileFormatException
+    {
+        boolean comments = getSnapshot().is(ConfigSnapshot.COMMENT);
+        boolean escapeNewline = getSnapshot().is(ConfigSnapshot.ESCAPE_NEWLINE);
+        String lineSeparator = getSnapshot().getLineSeparator();
+        StringBuilder comment = new StringBuilder();
+        StringBuilder buff = new StringBuilder();
+        String keyName = null;
+
+        for (String line = source.readLine(); line != null; line = source.readLine())
+        {
+            if (line.length() == 0)
+            {
+                handleComment(comment, handler);
+            }
+            else if ((buff.length() == 0) && (COMMENTS.indexOf(line.charAt(0)) >= 0))
+            {
+                if (comments)
+                {
+                    comment.append(line, 1, line.length());
+                    comment.append(lineSeparator);
+                }
+            }
+            else
+            {
+                handleComment(comment, handler);
+                if (escapeNewline && ((countEndingEscapes(line) & 1) != 0))
+                {
+                    buff.append(line, 0, line.length() - 1);
+
+                    continue;
+                }
+
+                if (buff.length() != 0)
+                {
+                    line = buff.append(line).toString();
+                    buff.setLength(0);
+                }
+
+                if (line.charAt(0) == IniParser.SECTION_BEGIN)
+                {
+                    if (keyName != null)
+                    {
+                        handler.endKey();
+                    }
+
+                    keyName = parseKeyLine(line, source, handler);
+                }
+                else
+                {
+                    if (keyName == null)
+                    {
+                        parseError(line, source.getLineNumber());
+                    }
+
+                    parseValueLine(line, source, handler);
+                }
+            }
+        }
+
+        handleComment(comment, handler);
+        if (keyName != null)
+        {
+            handler.endKey();
+        }
+    }
+
+    private int countEndingEscapes(String line)
+    {
+        int escapeCount = 0;
+
+        for (int i = line.length() - 1; (i >= 0) && (line.charAt(i) == ESCAPE_CHAR); i--)
+        {
+            escapeCount++;
+        }
+
+        return escapeCount;
+    }
+
+    private void handleComment(StringBuilder comment, RegHandler handler)
+    {
+        if (comment.length() != 0)
+        {
+            comment.setLength(comment.length() - getSnapshot().getLineSeparator().length());
+            handler.handleComment(comment.toString());
+            comment.setLength(0);
+        }
+    }
+
+    // index of the closing quote, honouring backslash escapes
+    private int indexOfQuote(String line)
+    {
+        int idx = -1;
+
+        for (int i = 1; (idx < 0) && (i < line.length()); i++)
+        {
+            char c = line.charAt(i);
+
+            if (c == ESCAPE_CHAR)
+            {
+                i++;
+            }
+            else if (c == EscapeTool.DOUBLE_QUOTE)
+            {
+                idx = i;
+            }
+        }
+
+        return idx;
+    }
+
+    private String parseKeyLine(String line, RegSource source, RegHandler handler) throws InvalidFileFormatException
+    {
+        if (line.charAt(line.length() - 1) != IniParser.SECTION_END)
+        {
+            parseError(line, source.getLineNumber());
+        }
+
+        String keyName = line.substring(1, line.length() - 1).trim();
+
+        if ((keyName.length() == 0) && !getSnapshot().is(ConfigSnapshot.UNNAMED_SECTION))
+        {
+            parseError(line, source.getLineNumber());
+        }
+
+        keyName = toSectionName(keyName);
+        handler.startKey(keyName);
+
+        return keyName;
+    }
+
+    private void parseValueLine(String line, RegSource source, RegHandler handler) throws InvalidFileFormatException
+    {
+        boolean quoted = line.charAt(0) == EscapeTool.DOUBLE_QUOTE;
+        int quote = quoted ? indexOfQuote(line) : -1;
+        int idx = line.indexOf(OPERATOR, quote + 1);
+
+        if (idx <= 0)
+        {
+            parseError(line, source.getLineNumber());
+        }
+
+        String name = line.substring(0, idx).trim();
+
+        if (getSnapshot().is(ConfigSnapshot.LOWER_CASE_OPTION))
+        {
+            name = name.toLowerCase(Locale.getDefault());
+        }
+
+        if (quoted)
+        {
+            name = RegEscapeTool.getInstance().unquote(name);
+        }
+
+        String value = trimSpace(line.substring(idx + 1));
+
+        if (value.equals(Type.REMOVE))
+        {
+            handler.handleValue(name, Type.REG_REMOVE, "");
+        }
+        else
+        {
+            int sep = ((value.length() == 0) || (value.charAt(0) == EscapeTool.DOUBLE_QUOTE)) ? -1 : value.indexOf(Registry.TYPE_SEPARATOR);
+            Type type = (sep < 0) ? Type.REG_SZ : Type.fromString(value.substring(0, sep));
+
+            if (type == null)
+            {
+                parseError(line, source.getLineNumber());
+            }
+
+            handler.handleValue(name, type, (sep < 0) ? RegEscapeTool.getInstance().unquote(value) : value.substring(sep + 1));
+        }
+    }
+
+    private String parseVersion(RegSource source) throws IOException, InvalidFileFormatException
+    {
+        String version = source.readLine();
+
+        if ((version != null) && (version.length() != 0) && (version.charAt(0) == BOM))
+        {
+            version = version.substring(1).trim();
+        }
+
+        if ((version == null) || (version.length() == 0))
+        {
+            throw new InvalidFileFormatException("Missing version header");
+        }
+
+        if ((_version != null) && !_version.equals(version))
+        {
+            throw new InvalidFileFormatException("Unsupported version: " + version);
+        }
+
+        return version;
+    }
+}
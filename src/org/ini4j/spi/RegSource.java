@@ -0,0 +1,203 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j.spi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+class RegSource
+{
+    private static final int BUFFER_SIZE = 65536;
+    private static final char CR = '\r';
+    private static final char LF = '\n';
+    private static final String UTF16LE = "UTF-16LE";
+    private static final String UTF16LE_BOM = "x-UTF-16LE-BOM";
+    private final byte[] _bytes;
+    private final char[] _chars = new char[BUFFER_SIZE];
+    private final StringBuilder _line = new StringBuilder();
+    private int _length;
+    private int _lineNumber;
+    private int _offset;
+    private int _pending;
+    private final Reader _reader;
+    private boolean _skipLF;
+    private final InputStream _stream;
+
+    RegSource(InputStream input, Charset charset)
+    {
+        if (UTF16LE.equals(charset.name()) || UTF16LE_BOM.equals(charset.name()))
+        {
+            _stream = input;
+            _bytes = new byte[BUFFER_SIZE * 2];
+            _reader = null;
+        }
+        else
+        {
+            _stream = null;
+            _bytes = null;
+            _reader = new InputStreamReader(input, charset);
+        }
+    }
+
+    RegSource(Reader input)
+    {
+        _stream = null;
+        _bytes = null;
+        _reader = input;
+    }
+
+    int getLineNumber()
+    {
+        return _lineNumber;
+    }
+
+    void close() throws IOException
+    {
+        if (_reader == null)
+        {
+            _stream.close();
+        }
+        else
+        {
+            _reader.close();
+        }
+    }
+
+    // next line without leading and trailing whitespace, null at the end
+    String readLine() throws IOException
+    {
+        StringBuilder buff = _line;
+        String line = null;
+        boolean eof = false;
+
+        buff.setLength(0);
+        while ((line == null) && !eof)
+        {
+            if ((_offset == _length) && !fill())
+            {
+                eof = true;
+                if (buff.length() != 0)
+                {
+                    line = buff.toString().trim();
+                    _lineNumber++;
+                }
+            }
+            else
+            {
+                if (_skipLF)
+                {
+                    _skipLF = false;
+                    if (_chars[_offset] == LF)
+                    {
+                        _offset++;
+
+                        continue;
+                    }
+                }
+
+                int start = _offset;
+                int end = start;
+
+                while ((end < _length) && (_chars[end] != LF) && (_chars[end] != CR))
+                {
+                    end++;
+                }
+
+                if (end == _length)
+                {
+                    buff.append(_chars, start, end - start);
+                    _offset = end;
+                }
+                else
+                {
+                    _skipLF = _chars[end] == CR;
+                    _offset = end + 1;
+                    _lineNumber++;
+                    if (buff.length() == 0)
+                    {
+                        line = trim(start, end);
+                    }
+                    else
+                    {
+                        buff.append(_chars, start, end - start);
+                        line = buff.toString().trim();
+                    }
+                }
+            }
+        }
+
+        return line;
+    }
+
+    private boolean fill() throws IOException
+    {
+        int n;
+
+        if (_reader == null)
+        {
+            int count = _stream.read(_bytes, _pending, _bytes.length - _pending);
+
+            if (count < 0)
+            {
+                n = -1;
+            }
+            else
+            {
+                count += _pending;
+                n = count / 2;
+                ByteBuffer.wrap(_bytes, 0, n * 2).order(ByteOrder.LITTLE_ENDIAN).asCharBuffer().get(_chars, 0, n);
+                _pending = count - (n * 2);
+                if (_pending != 0)
+                {
+                    _bytes[0] = _bytes[count - 1];
+                }
+            }
+        }
+        else
+        {
+            n = _reader.read(_chars, 0, _chars.length);
+        }
+
+        _offset = 0;
+        _length = Math.max(n, 0);
+
+        return n >= 0;
+    }
+
+    private String trim(int start, int end)
+    {
+        int first = start;
+        int last = end;
+
+        while ((first < last) && (_chars[first] <= ' '))
+        {
+            first++;
+        }
+
+        while ((first < last) && (_chars[last - 1] <= ' '))
+        {
+            last--;
+        }
+
+        return new String(_chars, first, last - first);
+    }
+}
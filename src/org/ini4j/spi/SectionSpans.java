@@ -0,0 +1,94 @@
+/*
+ * Copyright 2005,2009 Ivan SZKIBA
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ini4j.spi;
+
+import org.ini4j.Profile;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Byte ranges occupied by sections in a stored file.
+ *
+ * A section range starts with the comment attached to the section and lasts
+ * until the next range, so ranges cover the file without gaps. Everything
+ * before the first range belongs to the file header.
+ */
+public class SectionSpans
+{
+    private long _end = -1;
+    private long[] _last;
+    private long _prefixEnd = -1;
+    private final Map<Profile.Section, long[]> _spans = new IdentityHashMap<Profile.Section, long[]>();
+    private boolean _valid = true;
+
+    public long getEnd()
+    {
+        return _end;
+    }
+
+    public long getPrefixEnd()
+    {
+        return _prefixEnd;
+    }
+
+    public boolean isValid()
+    {
+        return _valid && (_end >= 0);
+    }
+
+    public void end(long offset)
+    {
+        if (_last == null)
+        {
+            _prefixEnd = offset;
+        }
+        else
+        {
+            _last[1] = offset;
+        }
+
+        _end = offset;
+    }
+
+    public long[] get(Profile.Section section)
+    {
+        return _spans.get(section);
+    }
+
+    public void invalidate()
+    {
+        _valid = false;
+    }
+
+    public void start(Profile.Section section, long offset)
+    {
+        if (_last == null)
+        {
+            _prefixEnd = offset;
+        }
+        else
+        {
+            _last[1] = offset;
+        }
+
+        _last = new long[] { offset, offset };
+        if (_spans.put(section, _last) != null)
+        {
+            _valid = false;
+        }
+    }
+}
@@ -91,7 +91,9 @@ class UnicodeInputStreamReader extends Reader
         }
     }
 
+    private int _bomLength;
     private final Charset _defaultEncoding;
+    private Charset _encoding;
     private InputStreamReader _reader;
     private final PushbackInputStream _stream;
 
@@ -107,6 +109,20 @@ class UnicodeInputStreamReader extends Reader
         _reader.close();
     }
 
+    int getBomLength() throws IOException
+    {
+        init();
+
+        return _bomLength;
+    }
+
+    Charset getEncoding() throws IOException
+    {
+        init();
+
+        return _encoding;
+    }
+
     public int read(char[] cbuf, int off, int len) throws IOException
     {
         init();
@@ -142,6 +158,7 @@ class UnicodeInputStreamReader extends Reader
         {
             encoding = bom._charset;
             unread = data.length - bom._bytes.length;
+            _bomLength = bom._bytes.length;
         }
 
         if (unread > 0)
@@ -149,6 +166,7 @@ class UnicodeInputStreamReader extends Reader
             _stream.unread(data, (n - unread), unread);
         }
 
+        _encoding = encoding;
         _reader = new InputStreamReader(_stream, encoding);
     }
 }
@@ -15,6 +15,8 @@
  */
 package org.ini4j.spi;
 
+import java.io.IOException;
+
 public class WinEscapeTool extends EscapeTool
 {
     private static final int ANSI_HEX_DIGITS = 2;
@@ -27,40 +29,41 @@ public class WinEscapeTool extends EscapeTool
         return INSTANCE;
     }
 
-    @Override void escapeBinary(StringBuilder buff, char c)
+    @Override void escapeBinary(Appendable output, char c) throws IOException
     {
-        buff.append("\\x");
-        buff.append(HEX[(c >>> HEX_DIGIT_3_OFFSET) & HEX_DIGIT_MASK]);
-        buff.append(HEX[c & HEX_DIGIT_MASK]);
+        output.append('\\');
+        output.append('x');
+        output.append(HEX[(c >>> HEX_DIGIT_3_OFFSET) & HEX_DIGIT_MASK]);
+        output.append(HEX[c & HEX_DIGIT_MASK]);
     }
 
-    @Override int unescapeBinary(StringBuilder buff, char escapeType, String line, int index)
+    @Override int unescapeBinary(Appendable output, char escapeType, CharSequence line, int index) throws IOException
     {
         int ret = index;
 
         if (escapeType == 'x')
         {
-            try
-            {
-                buff.append((char) Integer.parseInt(line.substring(index, index + ANSI_HEX_DIGITS), HEX_RADIX));
-                ret = index + ANSI_HEX_DIGITS;
-            }
-            catch (Exception x)
+            int c = parseDigits(line, index, ANSI_HEX_DIGITS, HEX_RADIX);
+
+            if (c < 0)
             {
-                throw new IllegalArgumentException("Malformed \\xHH encoding.", x);
+                throw new IllegalArgumentException("Malformed \\xHH encoding.");
             }
+
+            output.append((char) c);
+            ret = index + ANSI_HEX_DIGITS;
         }
         else if (escapeType == 'o')
         {
-            try
-            {
-                buff.append((char) Integer.parseInt(line.substring(index, index + ANSI_OCTAL_DIGITS), OCTAL_RADIX));
-                ret = index + ANSI_OCTAL_DIGITS;
-            }
-            catch (Exception x)
+            int c = parseDigits(line, index, ANSI_OCTAL_DIGITS, OCTAL_RADIX);
+
+            if (c < 0)
             {
-                throw new IllegalArgumentException("Malformed \\oOO encoding.", x);
+                throw new IllegalArgumentException("Malformed \\oOO encoding.");
             }
+
+            output.append((char) c);
+            ret = index + ANSI_OCTAL_DIGITS;
         }
 
         return ret;